@@ -0,0 +1,290 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Runs every router as an actor that owns its row of the distance table and
+ * its routes, and talks to its neighbors only through mailboxes.
+ * An actor is only scheduled while its mailbox holds messages, so idle routers
+ * cost nothing and tens of thousands of them fit in one JVM. Each activation
+ * runs on a virtual thread when the JVM supports them.
+ * The run ends when no message is in flight and no actor is running, which
+ * replaces the per-tick "did anything change" check.
+ */
+class ActorEngine {
+    /** Routes advertised by a neighbor, sorted by destination */
+    private static final class Vector {
+        final int[] dests;
+        final long[] routes;
+
+        Vector(int[] dests, long[] routes) {
+            this.dests = dests;
+            this.routes = routes;
+        }
+
+        /**
+         * Coalesces a newer advertisement into this one.
+         *
+         * @param newer routes sent later by the same neighbor
+         * @return the union of both, with newer routes winning
+         */
+        Vector merge(Vector newer) {
+            int[] d = new int[dests.length + newer.dests.length];
+            long[] r = new long[d.length];
+            int i = 0, j = 0, m = 0;
+            while (i < dests.length || j < newer.dests.length) {
+                if (j == newer.dests.length
+                        || (i < dests.length && dests[i] < newer.dests[j])) {
+                    d[m] = dests[i];
+                    r[m++] = routes[i++];
+                } else {
+                    if (i < dests.length && dests[i] == newer.dests[j]) i++;
+                    d[m] = newer.dests[j];
+                    r[m++] = newer.routes[j++];
+                }
+            }
+            return new Vector(Arrays.copyOf(d, m), Arrays.copyOf(r, m));
+        }
+    }
+
+    /** One router: its mailbox has a slot per neighbor, so it never holds more than degree messages */
+    private final class Actor implements Runnable {
+        final int id;
+        final int[] nbrs;
+        final int[] costs;
+        /** Slot k holds the unread routes of neighbor k */
+        final AtomicReferenceArray<Vector> mailbox;
+        /** Deliveries since the actor last looked at its mailbox; nonzero while scheduled */
+        final AtomicInteger signals = new AtomicInteger();
+        /** Whether the first activation still has to re-select every route */
+        boolean fresh;
+        final int[] outgoing;
+        /** Whether a destination is already in outgoing */
+        final boolean[] queued;
+        int outgoingCount;
+
+        Actor(int id) {
+            this.id = id;
+            this.nbrs = adj.getNeighbors(id);
+            this.costs = adj.getCosts(id);
+            this.mailbox = new AtomicReferenceArray<>(nbrs.length);
+            this.outgoing = new int[table.size()];
+            this.queued = new boolean[table.size()];
+        }
+
+        /** Wakes the actor up unless it is already scheduled or running */
+        void signal() {
+            if (signals.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                activate();
+            } catch (RuntimeException | Error e) {
+                // Nothing will drain this actor's messages, so stop waiting for quiescence
+                failure = e;
+                quiescent.countDown();
+                throw e;
+            }
+        }
+
+        /** Processes messages until the mailbox stays empty */
+        private void activate() {
+            activations.increment();
+            int seen = signals.get();
+            while (true) {
+                int drained = fresh ? 1 : 0;
+                if (fresh) {
+                    fresh = false;
+                    for (int d = 0; d < table.size(); d++) {
+                        if (d != id) select(d);
+                    }
+                }
+                for (int k = 0; k < nbrs.length; k++) {
+                    Vector v = mailbox.getAndSet(k, null);
+                    if (v == null) continue;
+                    receive(k, v);
+                    drained++;
+                }
+                send();
+                // Only now are the messages done: everything they caused is in flight
+                if (drained > 0 && inFlight.addAndGet(-drained) == 0) {
+                    quiescent.countDown();
+                }
+                seen = signals.addAndGet(-seen);
+                if (seen == 0) return;
+            }
+        }
+
+        /** Applies the routes of neighbor k to this router's distance table row */
+        void receive(int k, Vector v) {
+            for (int j = 0; j < v.dests.length; j++) {
+                int d = v.dests[j];
+                if (d == id) continue;
+                int newCost = DistanceVector.relaxedCost(costs[k], v.routes[j], id);
+                if (table.get(id, d, k) != newCost) {
+                    table.set(id, d, k, newCost);
+                    select(d);
+                }
+            }
+        }
+
+        /** Re-selects the best route to a destination and queues it for advertisement */
+        void select(int d) {
+            long best = DistanceVector.findMinHop(table, id, d);
+            long old = minCost[id][d];
+            if (best == old) return;
+            minCost[id][d] = best;
+            nextMinCost[id][d] = best;
+            if (DistanceVector.visibleChange(old, best) && !queued[d]) {
+                queued[d] = true;
+                outgoing[outgoingCount++] = d;
+            }
+        }
+
+        /** Delivers the queued routes to every neighbor */
+        void send() {
+            if (outgoingCount == 0) return;
+            int[] dests = Arrays.copyOf(outgoing, outgoingCount);
+            outgoingCount = 0;
+            Arrays.sort(dests);
+            long[] routes = new long[dests.length];
+            for (int j = 0; j < dests.length; j++) {
+                routes[j] = minCost[id][dests[j]];
+                queued[dests[j]] = false;
+            }
+            Vector v = new Vector(dests, routes);
+            for (int nbr : nbrs) {
+                actors[nbr].deliver(id, v);
+            }
+        }
+
+        /**
+         * Puts routes from a neighbor in the mailbox, coalescing them with any
+         * routes from that neighbor that have not been read yet.
+         */
+        void deliver(int from, Vector v) {
+            int k = adj.slot(id, from);
+            messages.increment();
+            // Count the message before it becomes visible so the count never drops to 0 early
+            inFlight.incrementAndGet();
+            Vector prev = mailbox.get(k);
+            while (true) {
+                Vector next = (prev == null) ? v : prev.merge(v);
+                if (mailbox.compareAndSet(k, prev, next)) break;
+                contention.increment();
+                prev = mailbox.get(k);
+            }
+            if (prev != null) {
+                // Merged into a message that is still counted
+                coalesced.increment();
+                inFlight.decrementAndGet();
+            } else {
+                signal();
+            }
+        }
+    }
+
+    private final DistanceTable table;
+    private final Adjacency adj;
+    private final long[][] minCost;
+    private final long[][] nextMinCost;
+    private final Executor executor;
+    private final Actor[] actors;
+
+    /** Messages delivered but not yet processed, plus pending first activations */
+    private final AtomicLong inFlight = new AtomicLong();
+    private final CountDownLatch quiescent = new CountDownLatch(1);
+    /** First exception thrown by an actor, rethrown by run */
+    private volatile Throwable failure;
+
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder activations = new LongAdder();
+    private final LongAdder contention = new LongAdder();
+
+    /**
+     * @param state routing state of the current topology
+     * @param executor runs actor activations
+     */
+    public ActorEngine(RoutingState state, Executor executor) {
+        this.table = state.getTable();
+        this.adj = table.getAdjacency();
+        this.minCost = state.getMinCost();
+        this.nextMinCost = state.getNextMinCost();
+        this.executor = executor;
+        this.actors = new Actor[table.size()];
+        for (int r = 0; r < actors.length; r++) {
+            actors[r] = new Actor(r);
+        }
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread per task, falling back
+     * to the given pool on JVMs without virtual threads.
+     *
+     * @param fallback executor to use without virtual threads, or null for the common pool
+     * @return the executor
+     */
+    public static Executor newExecutor(Executor fallback) {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return (fallback != null) ? fallback : ForkJoinPool.commonPool();
+        }
+    }
+
+    /**
+     * Runs the actors until they are quiescent. The converged routes are left
+     * in the state; a summary is reported on standard error.
+     *
+     * @param seeds routers whose links changed since the state last converged,
+     *              or null if every router starts from scratch
+     */
+    public void run(int[] seeds) {
+        long start = System.nanoTime();
+        table.takePending();
+        int[] starting = seeds;
+        if (starting == null) {
+            starting = new int[actors.length];
+            for (int r = 0; r < starting.length; r++) starting[r] = r;
+        }
+        if (starting.length == 0) {
+            DistanceVector.reportRun(0, "messages", start);
+            return;
+        }
+
+        // Starting routers read their neighbors' routes once, before any actor can change them
+        Arrays.stream(starting).parallel().forEach(r -> {
+            Actor a = actors[r];
+            for (int d = 0; d < table.size(); d++) {
+                if (d == r) continue;
+                for (int k = 0; k < a.nbrs.length; k++) {
+                    table.set(r, d, k, DistanceVector.relaxedCost(a.costs[k], minCost[a.nbrs[k]][d], r));
+                }
+            }
+            a.fresh = true;
+        });
+
+        inFlight.set(starting.length);
+        for (int r : starting) {
+            actors[r].signal();
+        }
+        try {
+            quiescent.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for routers", e);
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Router actor failed", failure);
+        }
+
+        DistanceVector.reportRun(messages.sum(), "messages (" + coalesced.sum() + " coalesced, "
+                                 + activations.sum() + " activations, " + contention.sum()
+                                 + " mailbox retries)", start);
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.*;
+
+/**
+ * Direct links of every node as sorted neighbor id arrays with matching costs.
+ * A router is never listed as its own neighbor, and when an edge was added
+ * several times the last weight wins.
+ */
+class Adjacency {
+    private final int[][] ids;
+    private final int[][] costs;
+
+    public Adjacency(NodeIndex index, Map<String, List<Neighbor>> graph) {
+        int n = index.size();
+        ids = new int[n][];
+        costs = new int[n][];
+        int[] cost = new int[n];
+        Arrays.fill(cost, -1);
+        for (int u = 0; u < n; u++) {
+            buildRow(u, index, graph, cost);
+        }
+    }
+
+    /**
+     * Copies the links of another adjacency over the same routers and
+     * rebuilds only the rows of the given routers. Rows of the other routers
+     * are shared.
+     *
+     * @param old adjacency of the previous topology
+     * @param index symbol table of both topologies
+     * @param graph links of the new topology
+     * @param touched names of the routers whose links may have changed;
+     *                names that are not routers are ignored
+     */
+    public Adjacency(Adjacency old, NodeIndex index, Map<String, List<Neighbor>> graph,
+                     Collection<String> touched) {
+        int n = index.size();
+        ids = old.ids.clone();
+        costs = old.costs.clone();
+        int[] cost = new int[n];
+        Arrays.fill(cost, -1);
+        for (String name : touched) {
+            int u = index.getId(name);
+            // Only a removal naming an unknown router gets here, and it changes nothing
+            if (u < 0) continue;
+            buildRow(u, index, graph, cost);
+        }
+    }
+
+    /** Fills the row of u from its neighbor list; cost is all -1 scratch space of size n */
+    private void buildRow(int u, NodeIndex index, Map<String, List<Neighbor>> graph, int[] cost) {
+        List<Neighbor> list = graph.get(index.getName(u));
+        int[] found = new int[list.size()];
+        int count = 0;
+        for (Neighbor neigh : list) {
+            int v = index.getId(neigh.getName());
+            if (v == u) continue;
+            if (cost[v] < 0) found[count++] = v;
+            cost[v] = neigh.getCost();
+        }
+        Arrays.sort(found, 0, count);
+        ids[u] = Arrays.copyOf(found, count);
+        costs[u] = new int[count];
+        for (int k = 0; k < count; k++) {
+            costs[u][k] = cost[found[k]];
+            cost[found[k]] = -1;
+        }
+    }
+
+    /**
+     * Wraps links that are already sorted and free of self loops.
+     * 
+     * @param ids ascending neighbor ids of every node
+     * @param costs link costs matching the entries of ids
+     */
+    Adjacency(int[][] ids, int[][] costs) {
+        this.ids = ids;
+        this.costs = costs;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /** @return ids of the neighbors of a node in ascending order */
+    public int[] getNeighbors(int node) {
+        return ids[node];
+    }
+
+    /** @return link costs matching the entries of getNeighbors */
+    public int[] getCosts(int node) {
+        return costs[node];
+    }
+
+    /** @return true if a node has the same neighbors with the same costs in both adjacencies */
+    public boolean sameLinks(Adjacency other, int node) {
+        return Arrays.equals(ids[node], other.ids[node])
+               && Arrays.equals(costs[node], other.costs[node]);
+    }
+
+    /**
+     * @param node a node id
+     * @param via id of a possible neighbor
+     * @return position of via in the neighbor list of node, or -1 if they are not adjacent
+     */
+    public int slot(int node, int via) {
+        int k = Arrays.binarySearch(ids[node], via);
+        return (k < 0) ? -1 : k;
+    }
+}
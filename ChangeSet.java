@@ -0,0 +1,74 @@
+import java.util.*;
+
+/**
+ * Destinations whose best route changed during a tick, grouped by the router
+ * that owns the route. Neighbors of that router only need to re-relax the
+ * destinations whose best cost changed. A route whose next hop changed but
+ * whose cost stayed the same is stored as ~dest, so it is negative.
+ * Each router's list is only written by the task relaxing that router, so
+ * sources can be processed in parallel.
+ */
+class ChangeSet {
+    private final int[][] dests;
+    private final int[] counts;
+    private final boolean[] rows;
+    private boolean all;
+
+    public ChangeSet(int n) {
+        dests = new int[n][];
+        counts = new int[n];
+        rows = new boolean[n];
+    }
+
+    public void add(int router, int dest) {
+        int[] list = dests[router];
+        if (list == null) {
+            list = dests[router] = new int[4];
+        } else if (counts[router] == list.length) {
+            list = dests[router] = Arrays.copyOf(list, list.length * 2);
+        }
+        list[counts[router]++] = dest;
+    }
+
+    /** Records a route whose next hop changed while its cost stayed the same. */
+    public void addMoved(int router, int dest) {
+        add(router, ~dest);
+    }
+
+    /** Marks every route as changed, which forces a full sweep on the next tick. */
+    public void markAll() {
+        all = true;
+    }
+
+    public boolean isAll() {
+        return all;
+    }
+
+    /** Marks every route of one router as changed, which forces a full sweep of its row. */
+    public void markRow(int router) {
+        rows[router] = true;
+    }
+
+    /** @return true if the whole row of a router must be swept on the next tick */
+    public boolean isMarked(int router) {
+        return all || rows[router];
+    }
+
+    public int count(int router) {
+        return counts[router];
+    }
+
+    /**
+     * @return changed destinations of a router, moved-only routes as ~dest;
+     *         only the first count(router) entries are valid
+     */
+    public int[] get(int router) {
+        return dests[router];
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        Arrays.fill(rows, false);
+        all = false;
+    }
+}
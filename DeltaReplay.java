@@ -0,0 +1,109 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Rebuilds the full distance tables from the output of
+ * DistanceVector --output=delta. Delta ticks are replaced by the tables
+ * DistanceVector prints without the option; all other lines are copied
+ * unchanged, so the result is identical to the full output.
+ *
+ * Usage: java DistanceVector --output=delta &lt; input.txt | java DeltaReplay
+ */
+public class DeltaReplay {
+    /** Routers in table order */
+    private List<String> order = new ArrayList<>();
+    /** Stable number of every router name seen, used to key the cells */
+    private final Map<String, Integer> ids = new HashMap<>();
+    /** Cells of every router that are not INF, keyed by destination and next hop */
+    private final Map<String, Map<Long, Integer>> tables = new HashMap<>();
+
+    private int id(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = ids.size();
+            ids.put(name, id);
+        }
+        return id;
+    }
+
+    private static long key(int dest, int via) {
+        return (long) dest << 32 | via;
+    }
+
+    /** Starts a new router set, dropping cells of routers that left */
+    private void routers(String list) {
+        order = list.isEmpty() ? new ArrayList<>() : Arrays.asList(list.split(","));
+        Set<Integer> present = new HashSet<>();
+        for (String name : order) present.add(id(name));
+        tables.keySet().retainAll(order);
+        for (Map<Long, Integer> cells : tables.values()) {
+            cells.keySet().removeIf(k -> !present.contains((int) (k >>> 32))
+                                          || !present.contains((int) (long) k));
+        }
+    }
+
+    /** Applies one line "router,dest,via,old,new" */
+    private void apply(String line) {
+        String[] parts = line.split(",");
+        if (parts.length != 5) {
+            throw new IllegalArgumentException("Malformed delta: " + line);
+        }
+        Map<Long, Integer> cells = tables.computeIfAbsent(parts[0], k -> new HashMap<>());
+        long key = key(id(parts[1]), id(parts[2]));
+        if ("INF".equals(parts[4])) {
+            cells.remove(key);
+        } else {
+            cells.put(key, Integer.parseInt(parts[4]));
+        }
+    }
+
+    /** Prints the current tables the way DistanceVector does */
+    private void print(TableWriter out, String tick) {
+        int[] numbers = new int[order.size()];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = id(order.get(i));
+        }
+        for (int s = 0; s < numbers.length; s++) {
+            Map<Long, Integer> cells = tables.getOrDefault(order.get(s), Collections.emptyMap());
+            out.text("Distance Table of router ").text(order.get(s))
+               .text(" at t=").text(tick).text(":").newline();
+            out.pad("", 5);
+            for (int d = 0; d < numbers.length; d++) {
+                if (d != s) out.pad(order.get(d), 5);
+            }
+            out.newline();
+            for (int d = 0; d < numbers.length; d++) {
+                if (d == s) continue;
+                out.pad(order.get(d), 5);
+                for (int v = 0; v < numbers.length; v++) {
+                    if (v == s) continue;
+                    Integer cost = cells.get(key(numbers[d], numbers[v]));
+                    out.padCost((cost == null) ? DistanceTable.INF : cost, 5);
+                }
+                out.newline();
+            }
+            out.newline();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in), 1 << 16);
+        TableWriter out = new TableWriter(new FileOutputStream(FileDescriptor.out));
+        DeltaReplay replay = new DeltaReplay();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.startsWith("Routers: ")) {
+                replay.routers(line.substring("Routers: ".length()));
+            } else if (line.startsWith("Tick ") && line.endsWith(":")) {
+                String tick = line.substring("Tick ".length(), line.length() - 1);
+                while ((line = in.readLine()) != null && !line.isEmpty()) {
+                    replay.apply(line);
+                }
+                replay.print(out, tick);
+            } else {
+                out.text(line).newline();
+            }
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,190 @@
+import java.util.*;
+
+/**
+ * Writes the distance tables as a stream of changed cells instead of full
+ * tables. Each printed tick becomes
+ * <pre>
+ * Tick T:
+ * router,dest,via,old,new
+ * ...
+ * (blank line)
+ * </pre>
+ * with one line per cell whose printed cost changed since the previous tick,
+ * routers in table order and cells in row then column order. A line
+ * "Routers: a,b,c" gives the table order whenever the set of routers
+ * changes; tables start out all INF. DeltaReplay turns the stream back into
+ * the full tables.
+ * Changes are taken from the distance table's change log, so a tick costs
+ * time proportional to the cells that were set, not to the table size.
+ */
+class DistanceDeltas {
+    private NodeIndex index;
+    private DistanceTable table;
+    /** Position of every node in the table order */
+    private int[] rank;
+    /** Cells changed by a topology change, as (dest, via, previous cost) triples per router */
+    private int[][] moved;
+    private int[] movedSize;
+
+    // Scratch space for the cells of one router
+    private long[] keys = new long[64];
+    private int[] dests = new int[64];
+    private int[] vias = new int[64];
+    private int[] olds = new int[64];
+
+    /**
+     * Follows the table of a state from now on. When the table was replaced
+     * since the last run, cells that changed with the topology are carried
+     * into the next tick, and a new router set is announced.
+     *
+     * @param state state about to run
+     * @param out where the following ticks are printed
+     */
+    public void attach(RoutingState state, TableWriter out) {
+        DistanceTable newTable = state.getTable();
+        if (newTable == table) return;
+        NodeIndex newIndex = state.getIndex();
+        int n = newIndex.size();
+        moved = new int[n][];
+        movedSize = new int[n];
+        diff(newIndex, newTable);
+
+        if (index == null || !index.sameNodes(newIndex)) {
+            out.text("Routers: ");
+            int[] order = newIndex.getOrder();
+            for (int i = 0; i < order.length; i++) {
+                if (i > 0) out.text(",");
+                out.text(newIndex.getName(order[i]));
+            }
+            out.newline();
+        }
+        rank = new int[n];
+        int[] order = newIndex.getOrder();
+        for (int i = 0; i < n; i++) {
+            rank[order[i]] = i;
+        }
+        index = newIndex;
+        table = newTable;
+        table.enableLog();
+    }
+
+    /**
+     * Records the printed cells that differ between the previous table, or
+     * the all INF tables of a new router, and the new table.
+     */
+    private void diff(NodeIndex newIndex, DistanceTable newTable) {
+        Adjacency oldAdj = (table == null) ? null : table.getAdjacency();
+        Adjacency newAdj = newTable.getAdjacency();
+        boolean sameNodes = index != null && index.sameNodes(newIndex);
+        int n = newIndex.size();
+        int[] toOld = new int[n];
+        for (int i = 0; i < n; i++) {
+            toOld[i] = (index == null) ? -1 : index.getId(newIndex.getName(i));
+        }
+        for (int s = 0; s < n; s++) {
+            int os = toOld[s];
+            int[] oldNbrs = (os < 0) ? new int[0] : oldAdj.getNeighbors(os);
+            int[] nbrs = newAdj.getNeighbors(s);
+            if (sameNodes && Arrays.equals(oldNbrs, nbrs)) continue; // the row is shared
+
+            // Every column that is a neighbor before or after
+            Set<Integer> columns = new TreeSet<>();
+            for (int v : nbrs) columns.add(v);
+            for (int ov : oldNbrs) columns.add(newIndex.getId(index.getName(ov)));
+            for (int v : columns) {
+                int ov = toOld[v];
+                int ok = (os < 0 || ov < 0) ? -1 : oldAdj.slot(os, ov);
+                int k = newAdj.slot(s, v);
+                for (int d = 0; d < n; d++) {
+                    if (d == s) continue;
+                    int od = toOld[d];
+                    int before = (ok < 0 || od < 0) ? DistanceTable.INF : printed(table.get(os, od, ok));
+                    int after = (k < 0) ? DistanceTable.INF : printed(newTable.get(s, d, k));
+                    if (before != after) addMoved(s, d, v, before);
+                }
+            }
+        }
+    }
+
+    private void addMoved(int s, int d, int v, int before) {
+        int size = movedSize[s];
+        if (moved[s] == null) {
+            moved[s] = new int[48];
+        } else if (size == moved[s].length) {
+            moved[s] = Arrays.copyOf(moved[s], 2 * size);
+        }
+        moved[s][size] = d;
+        moved[s][size + 1] = v;
+        moved[s][size + 2] = before;
+        movedSize[s] = size + 3;
+    }
+
+    /** @return the cost as printed: unset entries print as INF */
+    private static int printed(int cost) {
+        return (cost == DistanceTable.UNSET) ? DistanceTable.INF : cost;
+    }
+
+    /**
+     * Writes the cells that changed since the previous tick.
+     *
+     * @param out where to write the cells
+     * @param tick number of the tick
+     */
+    public void print(TableWriter out, int tick) {
+        Adjacency adj = table.getAdjacency();
+        int n = index.size();
+        out.text("Tick ").number(tick).text(":").newline();
+        for (int s : index.getOrder()) {
+            int count = 0;
+            for (int i = 0; i < movedSize[s]; i += 3) {
+                count = add(count, moved[s][i], moved[s][i + 1], moved[s][i + 2], n);
+            }
+            movedSize[s] = 0;
+            int[] nbrs = adj.getNeighbors(s);
+            int[] log = table.getLog(s);
+            for (int i = 0; i < table.getLogSize(s); i += 2) {
+                int pos = log[i];
+                count = add(count, pos / nbrs.length, nbrs[pos % nbrs.length], log[i + 1], n);
+            }
+            table.clearLog(s);
+            if (count == 0) continue;
+
+            // Sort by cell, keeping the earliest change of a cell first
+            Arrays.sort(keys, 0, count);
+            long lastCell = -1;
+            for (int i = 0; i < count; i++) {
+                long cell = keys[i] >>> 32;
+                if (cell == lastCell) continue;
+                lastCell = cell;
+                int e = (int) keys[i];
+                int k = adj.slot(s, vias[e]);
+                int before = printed(olds[e]);
+                int after = (k < 0) ? DistanceTable.INF : printed(table.get(s, dests[e], k));
+                if (before == after) continue;
+                out.text(index.getName(s)).text(",").text(index.getName(dests[e])).text(",")
+                   .text(index.getName(vias[e])).text(",");
+                cost(out, before).text(",");
+                cost(out, after).newline();
+            }
+        }
+        out.newline();
+    }
+
+    private int add(int count, int d, int v, int old, int n) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * count);
+            dests = Arrays.copyOf(dests, 2 * count);
+            vias = Arrays.copyOf(vias, 2 * count);
+            olds = Arrays.copyOf(olds, 2 * count);
+        }
+        keys[count] = ((long) rank[d] * n + rank[v]) << 32 | count;
+        dests[count] = d;
+        vias[count] = v;
+        olds[count] = old;
+        return count + 1;
+    }
+
+    private static TableWriter cost(TableWriter out, int cost) {
+        return (cost == DistanceTable.INF) ? out.text("INF") : out.number(cost);
+    }
+}
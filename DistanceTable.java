@@ -0,0 +1,242 @@
+import java.util.*;
+
+/**
+ * Distance tables of all nodes, stored as one flat primitive tensor.
+ * Only real neighbors can be next hops, so each source router owns one
+ * contiguous slab of n * degree ints and the cost from src to dest via its
+ * k-th neighbor lives at [src][dest * degree + k]. Every other next hop is
+ * unreachable (INF) by definition.
+ * Costs are only turned into text when the tables are printed.
+ */
+class DistanceTable {
+    /** Cost of a next hop through which the destination is unreachable */
+    public static final int INF = Integer.MAX_VALUE;
+    /** Marks a next hop that has not been computed yet */
+    public static final int UNSET = Integer.MIN_VALUE;
+
+    private final int n;
+    private final Adjacency adj;
+    private final int[][] cells;
+    /** Set when entries outside the stored neighbor columns changed since the last tick */
+    private boolean pending;
+    /** Changes of every source router as (position, previous cost) pairs, null unless logging */
+    private int[][] log;
+    private int[] logSize;
+    /** Destinations of every source router with changed cells, null unless tracked */
+    private BitSet[] dirty;
+
+    public DistanceTable(Adjacency adj) {
+        this.n = adj.size();
+        this.adj = adj;
+        cells = new int[n][];
+        for (int i = 0; i < n; i++) {
+            cells[i] = newRow(i);
+        }
+        // Every non-neighbor entry goes from unset to INF on the first tick
+        pending = n > 1;
+    }
+
+    /**
+     * Creates the table of a new topology, carrying over the entries of the
+     * table of the previous one. Rows of routers whose neighbors did not
+     * change are shared, not copied.
+     * 
+     * @param adj direct links of the new topology
+     * @param old the table to copy from
+     * @param toOld id in the old table of every node of this table, or -1 for new nodes
+     * @param toNew id in this table of every node of the old table
+     */
+    public DistanceTable(Adjacency adj, DistanceTable old, int[] toOld, int[] toNew) {
+        this.n = adj.size();
+        this.adj = adj;
+        cells = new int[n][];
+        if (old.dirty != null) trackDirty();
+        mergeFrom(old, toOld, toNew);
+    }
+
+    /**
+     * Copies a table so that changing either leaves the other as it was.
+     * Tracked destinations are copied too; the change log is not.
+     *
+     * @param other the table to copy
+     */
+    public DistanceTable(DistanceTable other) {
+        this.n = other.n;
+        this.adj = other.adj;
+        this.pending = other.pending;
+        cells = new int[n][];
+        for (int i = 0; i < n; i++) {
+            cells[i] = other.cells[i].clone();
+        }
+        if (other.dirty != null) {
+            dirty = new BitSet[n];
+            for (int i = 0; i < n; i++) {
+                dirty[i] = (BitSet) other.dirty[i].clone();
+            }
+        }
+    }
+
+    private int[] newRow(int src) {
+        int[] row = new int[n * adj.getNeighbors(src).length];
+        Arrays.fill(row, UNSET);
+        return row;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    public Adjacency getAdjacency() {
+        return adj;
+    }
+
+    /**
+     * @param src source node id
+     * @param dest destination node id
+     * @param k position of the next hop in the neighbor list of src
+     * @return the stored cost
+     */
+    public int get(int src, int dest, int k) {
+        return cells[src][dest * adj.getNeighbors(src).length + k];
+    }
+
+    public void set(int src, int dest, int k, int cost) {
+        int pos = dest * adj.getNeighbors(src).length + k;
+        if (log != null) record(src, pos, cells[src][pos]);
+        if (dirty != null) dirty[src].set(dest);
+        cells[src][pos] = cost;
+    }
+
+    /**
+     * Starts tracking the destinations whose cells change, per source router.
+     * Tables merged from a tracked table are tracked too, with every row that
+     * was rebuilt marked as changed.
+     */
+    public void trackDirty() {
+        dirty = new BitSet[n];
+        for (int i = 0; i < n; i++) {
+            dirty[i] = new BitSet(n);
+        }
+    }
+
+    /**
+     * @param src source node id
+     * @return destinations of src whose cells changed since the last call,
+     *         or null if nothing changed or changes are not tracked
+     */
+    public BitSet takeDirty(int src) {
+        if (dirty == null || dirty[src].isEmpty()) return null;
+        BitSet changed = dirty[src];
+        dirty[src] = new BitSet(n);
+        return changed;
+    }
+
+    /** Starts recording every change made through set */
+    public void enableLog() {
+        log = new int[n][];
+        logSize = new int[n];
+    }
+
+    private void record(int src, int pos, int old) {
+        int size = logSize[src];
+        if (log[src] == null) {
+            log[src] = new int[16];
+        } else if (size == log[src].length) {
+            log[src] = Arrays.copyOf(log[src], 2 * size);
+        }
+        log[src][size] = pos;
+        log[src][size + 1] = old;
+        logSize[src] = size + 2;
+    }
+
+    /**
+     * @param src source node id
+     * @return changes of src since the last clearLog, as (dest * degree + k,
+     *         previous cost) pairs in the first getLogSize(src) entries
+     */
+    public int[] getLog(int src) {
+        return log[src];
+    }
+
+    public int getLogSize(int src) {
+        return logSize[src];
+    }
+
+    public void clearLog(int src) {
+        logSize[src] = 0;
+    }
+
+    /** @return the cost from src to dest via any node, INF for non-neighbors */
+    public int getVia(int src, int dest, int via) {
+        int k = adj.slot(src, via);
+        return (k < 0) ? INF : get(src, dest, k);
+    }
+
+    /**
+     * Reports and clears changes to entries that are not stored, such as a
+     * neighbor column that disappeared with a removed link.
+     * 
+     * @return true if such a change happened since the last call
+     */
+    public boolean takePending() {
+        boolean result = pending;
+        pending = false;
+        return result;
+    }
+
+    private void mergeFrom(DistanceTable old, int[] toOld, int[] toNew) {
+        boolean sameNodes = old.n == n; // nodes are only ever added, never removed
+        pending = !sameNodes && n > 1;
+        for (int s = 0; s < n; s++) {
+            int os = toOld[s];
+            int[] nbrs = adj.getNeighbors(s);
+            int[] oldNbrs = (os < 0) ? null : old.adj.getNeighbors(os);
+            if (sameNodes && Arrays.equals(nbrs, oldNbrs)) {
+                cells[s] = old.cells[os];
+                continue;
+            }
+            cells[s] = newRow(s);
+            if (dirty != null) dirty[s].set(0, n); // any route of a relinked router may change
+            if (os < 0) continue; // new router, nothing to carry over
+
+            for (int k = 0; k < nbrs.length; k++) {
+                int ov = toOld[nbrs[k]];
+                int ok = (ov < 0) ? -1 : old.adj.slot(os, ov);
+                for (int d = 0; d < n; d++) {
+                    int od = toOld[d];
+                    if (od < 0 || ov < 0) continue;
+                    // A column that was not a neighbor before held INF
+                    cells[s][d * nbrs.length + k] = (ok < 0) ? INF : old.get(os, od, ok);
+                }
+            }
+
+            // A dropped neighbor column changes to INF wherever it was finite
+            for (int ok = 0; ok < oldNbrs.length; ok++) {
+                if (adj.slot(s, toNew[oldNbrs[ok]]) >= 0) continue;
+                for (int od = 0; od < old.n && !pending; od++) {
+                    int cost = old.get(os, od, ok);
+                    pending = cost != INF && cost != UNSET;
+                }
+            }
+        }
+    }
+
+    /** @return approximate heap bytes held by the table (arrays and headers) */
+    public long footprintBytes() {
+        long header = 16;
+        long bytes = header + 4L * n;
+        for (int[] row : cells) {
+            bytes += header + 4L * row.length;
+        }
+        return bytes;
+    }
+
+    /** @return number of stored cells */
+    public long cellCount() {
+        long count = 0;
+        for (int[] row : cells) {
+            count += row.length;
+        }
+        return count;
+    }
+}
@@ -1,245 +1,202 @@
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 
 /**
- * Represents a neighboring node in the network graph with its associated cost.
- * Used to store adjacency information for each node.
+ * Implementation of the Distance Vector Routing Algorithm.
+ * Simulates distributed routing where each node maintains distance tables
+ * and exchanges information with neighbors to compute shortest paths.
  */
-class Neighbor {
-    private String name;
-    private int cost;
-
-    public Neighbor(String name, int cost) {
-        this.name = name;
-        this.cost = cost;
+public class DistanceVector {
+    /** Ways of driving the synchronous ticks to convergence */
+    enum Engine {
+        /** Re-relax every (src, dest, via) entry on every tick */
+        SWEEP,
+        /** Only re-relax entries whose next hop's best cost changed on the previous tick */
+        WORKLIST,
+        /**
+         * Gauss-Seidel relaxation: routers use best costs updated earlier in the
+         * same sweep. Only the final routing tables are printed.
+         */
+        ASYNC,
+        /**
+         * Discrete-event simulation: routers advertise changed routes as
+         * messages delivered after a link delay. Only the final routing tables
+         * are printed.
+         */
+        EVENT,
+        /**
+         * Every router is an actor exchanging changed routes with its neighbors
+         * through mailboxes, on virtual threads where available. Only the final
+         * routing tables are printed.
+         */
+        ACTOR,
+        /**
+         * No distance vector at all: one Dijkstra search per destination yields
+         * the converged routing tables directly, which are the only output.
+         */
+        DIJKSTRA
     }
 
-    public String getName() {
-        return name;
+    /**
+     * Loop prevention applied when a neighbor's route points back at the
+     * receiver. Plain split horizon is not offered: without route timeouts a
+     * withheld route would leave the receiver's stale entry in place forever.
+     */
+    enum Horizon {
+        /** Use every advertised route */
+        NONE,
+        /** A router advertises INF for a route to the neighbor it uses as next hop */
+        POISON
     }
 
-    public void setName(String name) {
-        this.name = name;
-    }
+    /** Global tick counter to track algorithm iterations */
+    static int tick = 0;
 
-    public int getCost() {
-        return cost;
-    }
+    /** Engine used by runDistanceVector */
+    private static Engine engine = Engine.WORKLIST;
 
-    public void setCost(int cost) {
-        this.cost = cost;
-    }
-}
+    /** Loop prevention used when relaxing */
+    private static Horizon horizon = Horizon.NONE;
 
-/**
- * Represents a network graph using an adjacency list structure.
- * Supports adding nodes, adding edges with weights, and removing edges.
- */
-class Graph {
-    private final Map<String, List<Neighbor>> adjList = new HashMap<>();
+    /** Costs at or above this value count as unreachable, like RIP's infinity of 16 */
+    private static int maxMetric = Integer.MAX_VALUE;
 
-    public Map<String, List<Neighbor>> getAdjList() {
-        return adjList;
-    }
+    /** Runs the actors of the actor engine, created on first use */
+    private static Executor actorExecutor;
 
-    public void addNode(String node) {
-        adjList.putIfAbsent(node, new ArrayList<>());
-    }
+    /** Delay of every link for the event engine, or -1 to use the link cost */
+    private static int linkDelay = 1;
 
-    public void addEdge(String u, String v, int weight) {
-        if (weight >= 0) {
-            // Add bidirectional edge with positive weight
-            adjList.computeIfAbsent(u, k -> new ArrayList<>())
-                   .add(new Neighbor(v, weight));
-            adjList.computeIfAbsent(v, k -> new ArrayList<>())
-                   .add(new Neighbor(u, weight));
-        } else {
-            // Negative weight indicates edge removal
-            updateEdge(u, v);
-        }
-    }
+    /** Writes only the changed cells instead of whole distance tables, null for full tables */
+    private static DistanceDeltas deltas;
 
-    public void updateEdge(String u, String v) {
-        // Remove v from u's neighbor list
-        List<Neighbor> listU = adjList.get(u);
-        if (listU != null) {
-            listU.removeIf(neighbor -> neighbor.getName().equals(v));
-        }
-        
-        // Remove u from v's neighbor list
-        List<Neighbor> listV = adjList.get(v);
-        if (listV != null) {
-            listV.removeIf(neighbor -> neighbor.getName().equals(u));
-        }
-    }
-}
+    /** Per-tick counters of the tick based engines, null while metrics are disabled */
+    private static EngineMetrics metrics;
 
-/**
- * Represents a distance table entry containing distances to a destination
- * via different intermediate nodes (next hops).
- */
-class DistanceList {
-    private final Map<String, String> distances = new HashMap<>();
+    /** Whether to report ticks and wall time of every run on standard error */
+    private static boolean stats = false;
 
-    public Map<String, String> getDistances() {
-        return distances;
-    }
-}
+    /** Destination of everything printed to standard output */
+    static final TableWriter out = new TableWriter(new FileOutputStream(FileDescriptor.out));
 
-/**
- * Implementation of the Distance Vector Routing Algorithm.
- * Simulates distributed routing where each node maintains distance tables
- * and exchanges information with neighbors to compute shortest paths.
- */
-public class DistanceVector {
-    /** Global tick counter to track algorithm iterations */
-    private static int tick = 0;
+    /** Pool relaxing source routers in parallel, null to relax them sequentially */
+    private static ForkJoinPool pool;
 
-    /**
-     * Copies a 2D matrix of Neighbor objects from source to destination.
-     * 
-     * @param dest the destination matrix
-     * @param src the source matrix to copy from
-     */
-    private static void copyMatrix(Neighbor[][] dest, Neighbor[][] src) {
-        int n = src.length;
-        for (int i = 0; i < n; i++) {
-            System.arraycopy(src[i], 0, dest[i], 0, n);
-        }
-    }
+    /** Number of source ranges per pool thread, for load balancing */
+    private static final int CHUNKS_PER_THREAD = 4;
 
     /**
      * Finds the best next hop (minimum cost path) from source to destination
      * based on the distance table entries.
+     * Neighbors are visited in ascending id order and ids follow the
+     * alphabetical order of the names, so keeping the first minimum breaks
+     * ties by lexicographic order without comparing any strings.
      * 
      * @param table the distance table containing all routing information
-     * @param from the source node
-     * @param to the destination node
-     * @param nodeIndex mapping from node names to array indices
-     * @return the best neighbor to route through, or null if unreachable
+     * @param from id of the source node
+     * @param to id of the destination node
+     * @return the packed best route, or Route.NONE if unreachable
      */
-    private static Neighbor findMinHop(DistanceList[][] table, String from, String to,
-                                      Map<String, Integer> nodeIndex) {
-        DistanceList dl = table[nodeIndex.get(from)][nodeIndex.get(to)];
+    static long findMinHop(DistanceTable table, int from, int to) {
+        int[] nbrs = table.getAdjacency().getNeighbors(from);
+        long best = Route.NONE;
         int bestCost = Integer.MAX_VALUE;
-        Neighbor bestNeighbor = new Neighbor("", bestCost);
-        int countInf = 0;
-
-        // Iterate through all possible next hops to find the minimum cost path
-        for (Map.Entry<String, String> entry : dl.getDistances().entrySet()) {
-            String via = entry.getKey();
-            String costStr = entry.getValue();
-            if ("INF".equals(costStr)) {
-                countInf++;
-            } else {
-                int cost = Integer.parseInt(costStr);
-                // Choose minimum cost, break ties by lexicographic order
-                if (cost < bestCost ||
-                    (cost == bestCost && via.compareTo(bestNeighbor.getName()) < 0)) {
-                    bestCost = cost;
-                    bestNeighbor.setName(via);
-                    bestNeighbor.setCost(cost);
-                }
-            }
-        }
 
-        // Return null if all paths are infinite (unreachable)
-        if (countInf == dl.getDistances().size()) {
-            return null;
+        // Only neighbors can be next hops, every other entry is INF
+        for (int k = 0; k < nbrs.length; k++) {
+            int cost = table.get(from, to, k);
+            if (cost == DistanceTable.INF || cost == DistanceTable.UNSET) continue;
+            // Choose minimum cost, the first one wins ties
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = Route.pack(nbrs[k], cost);
+            }
         }
-        return bestNeighbor;
+        return best;
     }
 
     /**
-     * Initializes the distance tables and minimum cost matrices with direct neighbor costs.
+     * Initializes the minimum cost matrix and collects the direct neighbor costs.
      * 
-     * @param neighborCosts 2D array storing direct costs between adjacent nodes
      * @param minCost 2D array storing best known paths between all node pairs
-     * @param nodeIndex mapping from node names to array indices
+     * @param index symbol table of all nodes
      * @param graph the adjacency list representation of the network
+     * @return direct links of every node
      */
-    private static void initializeTables(int[][] neighborCosts, Neighbor[][] minCost,
-                                         Map<String, Integer> nodeIndex, Map<String, List<Neighbor>> graph) {
+    static Adjacency initializeTables(long[][] minCost, NodeIndex index,
+                                              Map<String, List<Neighbor>> graph) {
         // Initialize diagonal (cost to self is 0)
-        for (String node : nodeIndex.keySet()) {
-            int idx = nodeIndex.get(node);
-            minCost[idx][idx] = new Neighbor(node, 0);
+        for (int i = 0; i < index.size(); i++) {
+            Arrays.fill(minCost[i], Route.NONE);
+            minCost[i][i] = Route.pack(i, 0);
         }
 
         // Initialize direct neighbor costs
-        for (Map.Entry<String, List<Neighbor>> entry : graph.entrySet()) {
-            String u = entry.getKey();
-            int ui = nodeIndex.get(u);
-            for (Neighbor neigh : entry.getValue()) {
-                String v = neigh.getName();
-                int vi = nodeIndex.get(v);
-                neighborCosts[ui][vi] = neigh.getCost();
-            }
-        }
+        return new Adjacency(index, graph);
     }
 
     /**
-     * Builds a mapping from node names to array indices for matrix operations.
+     * Builds the symbol table mapping node names to array indices for matrix operations.
      * Nodes are sorted alphabetically to ensure consistent ordering.
      * 
      * @param graph the network graph
-     * @return mapping from node names to indices
+     * @return symbol table of all nodes
      */
-    private static Map<String, Integer> buildIndexMap(Graph graph) {
-        List<String> nodes = new ArrayList<>(graph.getAdjList().keySet());
-        Collections.sort(nodes); // Ensure consistent alphabetical ordering
-        Map<String, Integer> indexMap = new HashMap<>();
-        for (int i = 0; i < nodes.size(); i++) {
-            indexMap.put(nodes.get(i), i);
-        }
-        return indexMap;
-    }
-
-    /**
-     * Utility method to print text with fixed-width padding for table formatting.
-     * 
-     * @param text the text to print
-     * @param width the total width to pad to
-     */
-    private static void pad(String text, int width) {
-        System.out.print(text);
-        for (int i = text.length(); i < width; i++) {
-            System.out.print(" ");
-        }
+    static NodeIndex buildIndexMap(Graph graph) {
+        return new NodeIndex(graph.getAdjList().keySet());
     }
 
     /**
      * Prints the distance tables for all nodes at the current tick.
      * Shows the cost to reach each destination via each possible next hop.
      * 
-     * @param nodes set of all nodes in the network
+     * @param out where to write the tables
      * @param table the distance table containing routing information
-     * @param nodeIndex mapping from node names to array indices
+     * @param index symbol table of all nodes
      */
-    private static void printDistanceTables(Set<String> nodes, DistanceList[][] table,
-                                            Map<String, Integer> nodeIndex) {
-        for (String src : nodes) {
-            System.out.println("Distance Table of router " + src + " at t=" + tick + ":");
+    static void printDistanceTables(TableWriter out, DistanceTable table, NodeIndex index) {
+        int[] order = index.getOrder();
+        Adjacency adj = table.getAdjacency();
+        // Position of every node in the neighbor list of the current router, -1 if not adjacent
+        int[] slots = new int[index.size()];
+        Arrays.fill(slots, -1);
+
+        for (int si : order) {
+            int[] nbrs = adj.getNeighbors(si);
+            for (int k = 0; k < nbrs.length; k++) {
+                slots[nbrs[k]] = k;
+            }
+            out.text("Distance Table of router ").text(index.getName(si))
+               .text(" at t=").number(tick).text(":").newline();
             
             // Print header row with destination nodes
-            pad("", 5);
-            for (String dest : nodes) {
-                if (!dest.equals(src)) pad(dest, 5);
+            out.pad("", 5);
+            for (int di : order) {
+                if (di != si) out.pad(index.getName(di), 5);
             }
-            System.out.println();
+            out.newline();
 
             // Print each row showing costs via different next hops
-            for (String dest : nodes) {
-                if (dest.equals(src)) continue;
-                pad(dest, 5);
-                DistanceList dl = table[nodeIndex.get(src)][nodeIndex.get(dest)];
-                for (String via : nodes) {
-                    if (via.equals(src)) continue;
-                    String cost = dl.getDistances().getOrDefault(via, "INF");
-                    pad(cost, 5);
+            for (int di : order) {
+                if (di == si) continue;
+                out.pad(index.getName(di), 5);
+                for (int vi : order) {
+                    if (vi == si) continue;
+                    int k = slots[vi];
+                    out.padCost((k < 0) ? DistanceTable.INF : table.get(si, di, k), 5);
                 }
-                System.out.println();
+                out.newline();
+            }
+            out.newline();
+
+            for (int nbr : nbrs) {
+                slots[nbr] = -1;
             }
-            System.out.println();
         }
     }
 
@@ -247,189 +204,875 @@ public class DistanceVector {
      * Prints the final routing tables for all nodes.
      * Shows the next hop and total cost to reach each destination.
      * 
-     * @param nodes set of all nodes in the network
+     * @param out where to write the tables
      * @param minCost 2D array containing best paths between all node pairs
-     * @param nodeIndex mapping from node names to array indices
+     * @param index symbol table of all nodes
      */
-    private static void printRoutingTables(Set<String> nodes, Neighbor[][] minCost,
-                                           Map<String, Integer> nodeIndex) {
-        for (String src : nodeIndex.keySet()) {
-            System.out.println("Routing Table of router " + src + ":");
-            int i = nodeIndex.get(src);
-            for (String dest : nodes) {
-                if (dest.equals(src)) continue;
-                int j = nodeIndex.get(dest);
-                Neighbor via = minCost[i][j];
-                String nextHop = (via == null) ? "INF" : via.getName();
-                String costStr = (via == null) ? "INF" : String.valueOf(via.getCost());
-                System.out.println(dest + "," + nextHop + "," + costStr);
+    static void printRoutingTables(TableWriter out, long[][] minCost, NodeIndex index) {
+        printRoutingTables(out, i -> minCost[i], index);
+    }
+
+    /**
+     * Prints the routing tables, fetching the routes of one router at a time.
+     * 
+     * @param out where to write the tables
+     * @param rows returns the packed best routes of a router
+     * @param index symbol table of all nodes
+     */
+    private static void printRoutingTables(TableWriter out, IntFunction<long[]> rows, NodeIndex index) {
+        int[] order = index.getOrder();
+        for (int i : order) {
+            out.text("Routing Table of router ").text(index.getName(i)).text(":").newline();
+            long[] row = rows.apply(i);
+            for (int j : order) {
+                if (j == i) continue;
+                long route = row[j];
+                int via = Route.via(route);
+                out.text(index.getName(j)).text(",");
+                if (via < 0) {
+                    out.text("INF,INF");
+                } else {
+                    out.text(index.getName(via)).text(",").number(Route.cost(route));
+                }
+                out.newline();
             }
-            System.out.println();
+            out.newline();
         }
     }
 
+    /**
+     * Prints the routing tables the distance vector algorithm converges to,
+     * computed with Dijkstra searches in O(n * m log n) without any ticks.
+     * 
+     * @param index symbol table of all nodes
+     * @param adj current links
+     */
+    private static void printShortestPaths(NodeIndex index, Adjacency adj) {
+        long start = System.nanoTime();
+        int n = index.size();
+        long[][] minCost = new long[n][n];
+        new ShortestPaths(adj, maxMetric).computeAll(minCost, pool);
+        if (stats) reportRun(n, "searches", start);
+        printRoutingTables(out, minCost, index);
+    }
+
     /**
      * Executes the main distance vector algorithm loop.
      * Iteratively updates distance tables until convergence is reached.
+     * Each router only relaxes over its real neighbors, so a tick costs
+     * O(n^2 * degree) instead of O(n^3).
      * 
-     * @param neighborCosts direct costs between adjacent nodes
-     * @param minCost best known paths between all node pairs
-     * @param nodeIndex mapping from node names to array indices
-     * @param table distance tables for all nodes
+     * @param state routing state of the current topology
+     * @param seeds routers whose links changed since the state last converged,
+     *              or null to relax every router on the first tick
+     * @param sink where to print the tables of every tick and the final
+     *             routing tables, or null to only converge
      */
-    private static void runDistanceVector(int[][] neighborCosts, Neighbor[][] minCost,
-                                          Map<String, Integer> nodeIndex, DistanceList[][] table) {
-        Set<String> nodes = nodeIndex.keySet();
-        int n = nodes.size();
+    static void runDistanceVector(RoutingState state, int[] seeds, TableWriter sink) {
+        if (engine == Engine.ASYNC) {
+            runAsync(state, seeds);
+            if (sink != null) printRoutingTables(sink, state.getMinCost(), state.getIndex());
+            return;
+        }
+        if (engine == Engine.EVENT) {
+            new EventEngine(state, linkDelay).run(seeds);
+            if (sink != null) printRoutingTables(sink, state.getMinCost(), state.getIndex());
+            return;
+        }
+        if (engine == Engine.ACTOR) {
+            if (actorExecutor == null) actorExecutor = ActorEngine.newExecutor(pool);
+            new ActorEngine(state, actorExecutor).run(seeds);
+            if (sink != null) printRoutingTables(sink, state.getMinCost(), state.getIndex());
+            return;
+        }
+        long start = System.nanoTime();
+        int firstTick = tick;
+        if (deltas != null && sink != null) deltas.attach(state, sink);
+        NodeIndex index = state.getIndex();
+        DistanceTable table = state.getTable();
+        int n = index.size();
         boolean changed = true;
+        ChangeSet work = new ChangeSet(n);
+        ChangeSet nextWork = new ChangeSet(n);
+        int chunks = (pool == null) ? 1 : pool.getParallelism() * CHUNKS_PER_THREAD;
+        int[][] touched = new int[chunks][n];
+        boolean[][] marked = new boolean[chunks][n];
+        if (seeds == null) {
+            work.markAll(); // The first tick after (re)initialization sees every entry
+        } else {
+            // Only rows with changed links can differ from the converged state
+            for (int seed : seeds) {
+                work.markRow(seed);
+            }
+        }
 
         // Continue until no changes occur (convergence)
         while (changed) {
-            Neighbor[][] newMinCost = new Neighbor[n][n];
-            copyMatrix(newMinCost, minCost);
-            int stableCount = 0;
-
-            // For each source node
-            for (String src : nodes) {
-                int si = nodeIndex.get(src);
-                // For each destination node
-                for (String dest : nodes) {
-                    if (dest.equals(src)) continue;
-                    int di = nodeIndex.get(dest);
-                    
-                    // For each possible intermediate node (next hop)
-                    for (String via : nodes) {
-                        if (via.equals(src)) continue;
-                        int vi = nodeIndex.get(via);
-                        
-                        // Calculate cost: src -> via + via -> dest
-                        int costToVia = neighborCosts[si][vi];
-                        Neighbor bestVia = minCost[vi][di];
-                        int costViaDest = (bestVia == null) ? -1 : bestVia.getCost();
-                        
-                        // Determine new cost (INF if any segment is unreachable)
-                        String newCost = (costToVia < 0 || costViaDest < 0)
-                                         ? "INF"
-                                         : String.valueOf(costToVia + costViaDest);
-
-                        // Update distance table if cost has changed
-                        DistanceList dl = table[si][di];
-                        if (dl == null || !newCost.equals(dl.getDistances().get(via))) {
-                            if (dl == null) table[si][di] = new DistanceList();
-                            table[si][di].getDistances().put(via, newCost);
-                            changed = true;
-                        } else {
-                            stableCount++;
-                        }
+            long[][] minCost = state.getMinCost();
+            long[][] newMinCost = state.getNextMinCost();
+            if (metrics != null) metrics.startTick();
+            syncChanged(minCost, newMinCost, work);
+            changed = table.takePending();
+
+            if (pool == null) {
+                // For each source node
+                for (int si = 0; si < n; si++) {
+                    changed |= relaxSource(si, minCost, newMinCost, table, work, nextWork,
+                                           touched[0], marked[0]);
+                }
+            } else {
+                changed |= relaxParallel(minCost, newMinCost, table, work, nextWork,
+                                         touched, marked);
+            }
+
+            if (metrics != null) metrics.endTick(tick, !changed);
+
+            // Print intermediate state if still changing
+            if (changed) {
+                if (sink != null && deltas == null) {
+                    printDistanceTables(sink, table, index);
+                } else if (sink != null) {
+                    deltas.print(sink, tick);
+                }
+                tick++;
+            }
+            state.swap();
+            ChangeSet done = work;
+            work = nextWork;
+            nextWork = done;
+            nextWork.clear();
+        }
+        if (stats) reportRun(tick - firstTick, "ticks", start);
+        if (metrics != null) metrics.flush();
+
+        // Print final routing tables
+        if (sink != null) printRoutingTables(sink, state.getMinCost(), index);
+    }
+
+    /**
+     * Converges a state with asynchronous (Gauss-Seidel) relaxation. Routers
+     * are visited in breadth-first order, alternating direction every sweep,
+     * and read the best costs their neighbors computed earlier in the same
+     * sweep, so news travels many hops per sweep instead of one per tick.
+     * A router is only relaxed again after a neighbor's best cost changed.
+     * The final routes are the same as with synchronous ticks, but no
+     * intermediate distance tables are printed; the number of sweeps and
+     * the wall time are reported on standard error instead.
+     * 
+     * @param state routing state of the current topology
+     * @param seeds routers whose links changed since the state last converged,
+     *              or null to relax every router
+     */
+    private static void runAsync(RoutingState state, int[] seeds) {
+        long start = System.nanoTime();
+        DistanceTable table = state.getTable();
+        Adjacency adj = table.getAdjacency();
+        int n = table.size();
+        long[][] minCost = state.getMinCost();
+        // Routes are written to both buffers so they stay identical for the next run
+        long[][] mirror = state.getNextMinCost();
+        int[] order = sweepOrder(adj);
+        boolean[] dirty = new boolean[n];
+        if (seeds == null) {
+            Arrays.fill(dirty, true);
+        } else {
+            for (int seed : seeds) {
+                dirty[seed] = true;
+            }
+        }
+        table.takePending();
+
+        int sweeps = 0;
+        boolean active = true;
+        while (active) {
+            active = false;
+            boolean forward = sweeps % 2 == 0;
+            for (int i = 0; i < n; i++) {
+                int si = order[forward ? i : n - 1 - i];
+                if (!dirty[si]) continue;
+                dirty[si] = false;
+                active = true;
+                if (relaxInPlace(si, minCost, mirror, table)) {
+                    // Neighbors route through si, so they have to look again
+                    for (int nbr : adj.getNeighbors(si)) {
+                        dirty[nbr] = true;
                     }
-                    // Update minimum cost path for this src-dest pair
-                    newMinCost[si][di] = findMinHop(table, src, dest, nodeIndex);
                 }
             }
+            if (active) sweeps++;
+        }
 
-            // Check for convergence (all entries stable)
-            int expectedStable = n * (n - 1) * (n - 1);
-            if (stableCount == expectedStable) {
-                changed = false;
-                tick--; // Adjust tick since we incremented it unnecessarily
-            } else {
-                // Print intermediate state if still changing
-                printDistanceTables(nodes, table, nodeIndex);
+        reportRun(sweeps, "sweeps", start);
+    }
+
+    /**
+     * Reports on standard error how many ticks or sweeps a run needed with
+     * the current engine and loop prevention settings.
+     * 
+     * @param rounds number of ticks, sweeps or messages
+     * @param unit what a round is called
+     * @param start System.nanoTime() at the start of the run
+     */
+    static void reportRun(long rounds, String unit, long start) {
+        reportRun(engine.name().charAt(0) + engine.name().substring(1).toLowerCase(),
+                  rounds, unit, start);
+    }
+
+    /**
+     * Reports a run like reportRun(rounds, unit, start) under another engine name.
+     * 
+     * @param name engine name to report
+     * @param rounds number of rounds of the run
+     * @param unit what a round is called
+     * @param start System.nanoTime() at the start of the run
+     */
+    static void reportRun(String name, long rounds, String unit, long start) {
+        String mode = "";
+        if (horizon == Horizon.POISON) mode = " with poisoned reverse";
+        if (maxMetric != Integer.MAX_VALUE) {
+            mode += (mode.isEmpty() ? " with" : " and") + " max metric " + maxMetric;
+        }
+        System.err.printf("%s engine%s: converged after %d %s in %.3f ms%n",
+                          name, mode, rounds, unit, (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Re-relaxes every destination of one router against the current routes
+     * and updates its routes in place.
+     * 
+     * @param si id of the source router
+     * @param minCost current best paths, read and written
+     * @param mirror second route buffer, kept equal to minCost
+     * @param table distance tables for all nodes
+     * @return true if any route changed in a way the neighbors can see
+     */
+    private static boolean relaxInPlace(int si, long[][] minCost, long[][] mirror,
+                                        DistanceTable table) {
+        Adjacency adj = table.getAdjacency();
+        int[] nbrs = adj.getNeighbors(si);
+        int[] costs = adj.getCosts(si);
+        boolean visible = false;
+        for (int di = 0; di < table.size(); di++) {
+            if (di == si) continue;
+            for (int k = 0; k < nbrs.length; k++) {
+                relax(table, si, di, k, costs[k], minCost[nbrs[k]][di]);
             }
+            long best = findMinHop(table, si, di);
+            long old = minCost[si][di];
+            if (best == old) continue;
+            visible |= visibleChange(old, best);
+            minCost[si][di] = best;
+            mirror[si][di] = best;
+        }
+        return visible;
+    }
 
-            tick++;
-            copyMatrix(minCost, newMinCost);
+    /**
+     * Orders routers breadth first, starting each connected component from its
+     * lowest id, so that routers close in the topology are close in the sweep.
+     * 
+     * @param adj direct links of every node
+     * @return all node ids in sweep order
+     */
+    private static int[] sweepOrder(Adjacency adj) {
+        int n = adj.size();
+        int[] order = new int[n];
+        boolean[] seen = new boolean[n];
+        int tail = 0;
+        for (int root = 0; root < n; root++) {
+            if (seen[root]) continue;
+            seen[root] = true;
+            order[tail++] = root;
+            for (int head = tail - 1; head < tail; head++) {
+                for (int nbr : adj.getNeighbors(order[head])) {
+                    if (!seen[nbr]) {
+                        seen[nbr] = true;
+                        order[tail++] = nbr;
+                    }
+                }
+            }
         }
+        return order;
+    }
 
-        // Print final routing tables
-        printRoutingTables(nodes, minCost, nodeIndex);
+    /**
+     * Brings the buffer receiving this tick's routes up to date. It still holds
+     * the routes of two ticks ago, so only the routes that changed on the
+     * previous tick need to be copied over.
+     * 
+     * @param minCost best paths of the previous tick
+     * @param newMinCost buffer receiving the best paths of this tick
+     * @param changes routes that changed on the previous tick
+     */
+    private static void syncChanged(long[][] minCost, long[][] newMinCost, ChangeSet changes) {
+        for (int r = 0; r < minCost.length; r++) {
+            int[] dests = changes.get(r);
+            for (int j = changes.count(r) - 1; j >= 0; j--) {
+                int d = (dests[j] < 0) ? ~dests[j] : dests[j];
+                newMinCost[r][d] = minCost[r][d];
+            }
+        }
     }
 
-    private static void mergeState(Neighbor[][] oldMinCost, Map<String, Integer> oldIndex,
-                                   Map<String, Integer> newIndex,
-                                   Neighbor[][] newMinCost, DistanceList[][] newTable,
-                                   DistanceList[][] oldTable) {
+    /**
+     * Relaxes the entries of one source router for the current tick. A source
+     * only reads the previous tick's routes and only writes its own table row,
+     * route row and change list, so sources are independent of each other.
+     * 
+     * @param si id of the source router
+     * @param minCost best paths of the previous tick
+     * @param newMinCost best paths being computed for this tick
+     * @param table distance tables for all nodes
+     * @param work destinations whose best route changed on the previous tick
+     * @param changes collects the destinations whose best route changed
+     * @param touched scratch list of destinations with a changed entry
+     * @param marked scratch flags for the entries of touched, all false on entry
+     * @return true if any distance table entry changed
+     */
+    private static boolean relaxSource(int si, long[][] minCost, long[][] newMinCost,
+                                       DistanceTable table, ChangeSet work, ChangeSet changes,
+                                       int[] touched, boolean[] marked) {
+        if (engine == Engine.SWEEP || work.isMarked(si)) {
+            return sweepSource(si, minCost, newMinCost, table, changes);
+        }
+        return relaxChanged(si, minCost, newMinCost, table, work, changes, touched, marked);
+    }
+
+    /**
+     * Relaxes all source routers on the pool, split into contiguous ranges.
+     * Produces exactly the same tables and routes as relaxing them in order.
+     * 
+     * @param minCost best paths of the previous tick
+     * @param newMinCost best paths being computed for this tick
+     * @param table distance tables for all nodes
+     * @param work destinations whose best route changed on the previous tick
+     * @param changes collects the destinations whose best route changed
+     * @param touched one scratch list per range
+     * @param marked one scratch flag array per range
+     * @return true if any distance table entry changed
+     */
+    private static boolean relaxParallel(long[][] minCost, long[][] newMinCost,
+                                         DistanceTable table, ChangeSet work, ChangeSet changes,
+                                         int[][] touched, boolean[][] marked) {
+        int n = table.size();
+        int chunks = touched.length;
+        List<ForkJoinTask<Boolean>> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            int from = (int) ((long) n * c / chunks);
+            int to = (int) ((long) n * (c + 1) / chunks);
+            int[] chunkTouched = touched[c];
+            boolean[] chunkMarked = marked[c];
+            tasks.add(pool.submit(() -> {
+                boolean changed = false;
+                for (int si = from; si < to; si++) {
+                    changed |= relaxSource(si, minCost, newMinCost, table, work, changes,
+                                           chunkTouched, chunkMarked);
+                }
+                return changed;
+            }));
+        }
+
+        boolean changed = false;
+        for (ForkJoinTask<Boolean> task : tasks) {
+            changed |= task.join();
+        }
+        return changed;
+    }
+
+    /**
+     * Re-relaxes every destination of one source router over all its neighbors.
+     * 
+     * @param si id of the source router
+     * @param minCost best paths of the previous tick
+     * @param newMinCost best paths being computed for this tick
+     * @param table distance tables for all nodes
+     * @param changes collects the destinations whose best route changed
+     * @return true if any distance table entry changed
+     */
+    private static boolean sweepSource(int si, long[][] minCost, long[][] newMinCost,
+                                       DistanceTable table, ChangeSet changes) {
+        int n = table.size();
+        Adjacency adj = table.getAdjacency();
+        int[] nbrs = adj.getNeighbors(si);
+        int[] costs = adj.getCosts(si);
+        int updated = 0;
+        int moved = 0;
+
+        // For each destination node
+        for (int di = 0; di < n; di++) {
+            if (di == si) continue;
+            
+            // For each neighbor as the next hop
+            for (int k = 0; k < nbrs.length; k++) {
+                if (relax(table, si, di, k, costs[k], minCost[nbrs[k]][di])) updated++;
+            }
+            // Update minimum cost path for this src-dest pair
+            if (select(si, di, minCost, newMinCost, table, changes)) moved++;
+        }
+        if (metrics != null) metrics.add((n - 1) * nbrs.length, updated, moved);
+        return updated > 0;
+    }
+
+    /**
+     * Re-relaxes only the entries of one source router whose next hop reported
+     * a changed best cost on the previous tick. All other entries would keep
+     * their value, so skipping them gives the same tables as a full sweep.
+     * 
+     * @param si id of the source router
+     * @param minCost best paths of the previous tick
+     * @param newMinCost best paths being computed for this tick
+     * @param table distance tables for all nodes
+     * @param work destinations whose best route changed on the previous tick
+     * @param changes collects the destinations whose best route changed
+     * @param touched scratch list of destinations with a changed entry
+     * @param marked scratch flags for the entries of touched, all false on entry
+     * @return true if any distance table entry changed
+     */
+    private static boolean relaxChanged(int si, long[][] minCost, long[][] newMinCost,
+                                        DistanceTable table, ChangeSet work,
+                                        ChangeSet changes, int[] touched, boolean[] marked) {
+        Adjacency adj = table.getAdjacency();
+        int[] nbrs = adj.getNeighbors(si);
+        int[] costs = adj.getCosts(si);
+        int count = 0;
+        int relaxed = 0;
+        int updated = 0;
+
+        for (int k = 0; k < nbrs.length; k++) {
+            int vi = nbrs[k];
+            int[] dests = work.get(vi);
+            for (int j = work.count(vi) - 1; j >= 0; j--) {
+                int di = dests[j];
+                if (di < 0) {
+                    // A moved-only route keeps its cost, but may change the horizon check
+                    if (horizon == Horizon.NONE) continue;
+                    di = ~di;
+                }
+                if (di == si) continue;
+                relaxed++;
+                if (relax(table, si, di, k, costs[k], minCost[vi][di])) {
+                    updated++;
+                    if (!marked[di]) {
+                        marked[di] = true;
+                        touched[count++] = di;
+                    }
+                }
+            }
+        }
+
+        // Only destinations with a changed entry can have a different best path
+        int moved = 0;
+        for (int j = 0; j < count; j++) {
+            int di = touched[j];
+            marked[di] = false;
+            if (select(si, di, minCost, newMinCost, table, changes)) moved++;
+        }
+        if (metrics != null) metrics.add(relaxed, updated, moved);
+        return count > 0;
+    }
+
+    /**
+     * Recomputes the cost from src to dest via one neighbor and stores it.
+     * 
+     * @param table distance tables for all nodes
+     * @param si id of the source router
+     * @param di id of the destination router
+     * @param k position of the next hop in the neighbor list of src
+     * @param costToVia cost of the link from src to the next hop
+     * @param bestVia packed best route of the next hop to dest
+     * @return true if the entry changed
+     */
+    private static boolean relax(DistanceTable table, int si, int di, int k,
+                                 int costToVia, long bestVia) {
+        int newCost = relaxedCost(costToVia, bestVia, si);
+
+        // Update distance table if cost has changed
+        if (table.get(si, di, k) != newCost) {
+            table.set(si, di, k, newCost);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Computes the cost of reaching a destination through a neighbor, applying
+     * the configured horizon and max metric.
+     * 
+     * @param costToVia cost of the link from the receiver to the neighbor
+     * @param bestVia packed best route the neighbor advertises for the destination
+     * @param receiver id of the router doing the relaxation
+     * @return the cost, or DistanceTable.INF if the destination is unreachable this way
+     */
+    static int relaxedCost(int costToVia, long bestVia, int receiver) {
+        // Calculate cost: src -> via + via -> dest
+        int costViaDest = Route.cost(bestVia);
+        if (horizon != Horizon.NONE && Route.via(bestVia) == receiver) {
+            costViaDest = -1; // the next hop routes back through us, so it poisons the route
+        }
+        
+        // Determine new cost (INF if any segment is unreachable or too long)
+        int newCost = (costToVia < 0 || costViaDest < 0)
+                      ? DistanceTable.INF
+                      : costToVia + costViaDest;
+        return (newCost >= maxMetric) ? DistanceTable.INF : newCost;
+    }
+
+    /** @return true if a route change can change what neighbors compute from it */
+    static boolean visibleChange(long oldRoute, long newRoute) {
+        // With a horizon, a new next hop alone changes what neighbors see
+        return horizon != Horizon.NONE || Route.cost(oldRoute) != Route.cost(newRoute);
+    }
+
+    /**
+     * Selects the best path for a src-dest pair. Only a changed route is
+     * written to the new buffer and recorded.
+     * 
+     * @param si id of the source router
+     * @param di id of the destination router
+     * @param minCost best paths of the previous tick
+     * @param newMinCost best paths being computed for this tick
+     * @param table distance tables for all nodes
+     * @param changes collects the destinations whose best route changed
+     * @return true if the next hop of the route changed
+     */
+    private static boolean select(int si, int di, long[][] minCost, long[][] newMinCost,
+                                  DistanceTable table, ChangeSet changes) {
+        long best = findMinHop(table, si, di);
+        long old = minCost[si][di];
+        if (best == old) return false;
+        newMinCost[si][di] = best;
+        if (Route.cost(best) != Route.cost(old)) {
+            changes.add(si, di);
+        } else {
+            changes.addMoved(si, di);
+        }
+        return Route.via(best) != Route.via(old);
+    }
+
+    /**
+     * Builds the routing state of a topology with new routers, carrying over
+     * the routes and distance tables of the previous state.
+     * 
+     * @param oldState converged state of the previous topology
+     * @param newIndex symbol table of the new topology
+     * @param newMinCost initialized best routes of the new topology
+     * @param newAdj direct links of the new topology
+     * @param report whether to report the footprint of the new table
+     * @return the merged state
+     */
+    static RoutingState mergeState(RoutingState oldState, NodeIndex newIndex,
+                                   long[][] newMinCost, Adjacency newAdj,
+                                   boolean report) {
+        NodeIndex oldIndex = oldState.getIndex();
+        long[][] oldMinCost = oldState.getMinCost();
+
+        // Map ids between both topologies once
+        int oldN = oldIndex.size();
+        int[] toNew = new int[oldN];
+        int[] toOld = new int[newIndex.size()];
+        Arrays.fill(toOld, -1);
+        for (int i = 0; i < oldN; i++) {
+            toNew[i] = newIndex.getId(oldIndex.getName(i));
+            toOld[toNew[i]] = i;
+        }
+
         // Copy existing state for nodes that exist in both old and new topologies
-        for (String nodeU : oldIndex.keySet()) {
-            for (String nodeV : oldIndex.keySet()) {
-                int ou = oldIndex.get(nodeU);
-                int ov = oldIndex.get(nodeV);
-                int nu = newIndex.get(nodeU);
-                int nv = newIndex.get(nodeV);
-                newMinCost[nu][nv] = oldMinCost[ou][ov];
-                newTable[nu][nv] = oldTable[ou][ov];
+        for (int ou = 0; ou < oldN; ou++) {
+            for (int ov = 0; ov < oldN; ov++) {
+                long route = oldMinCost[ou][ov];
+                int via = Route.via(route);
+                newMinCost[toNew[ou]][toNew[ov]] = (via < 0) ? route
+                                                   : Route.pack(toNew[via], Route.cost(route));
             }
         }
+        DistanceTable oldTable = oldState.getTable();
+        DistanceTable newTable = allocateTable(
+            () -> new DistanceTable(newAdj, oldTable, toOld, toNew), report);
+        return new RoutingState(newIndex, newTable, newMinCost);
     }
 
-    public static void main(String[] args) {
-        Scanner scanner = new Scanner(System.in);
+    /**
+     * Applies a batch of link changes to a converged state and runs the
+     * engine until it converges again. Between the same routers only the
+     * links of the routers in the batch are rebuilt and only the routers
+     * whose links changed are re-seeded; new routers are merged in with
+     * mergeState.
+     * 
+     * @param state converged state of the topology before the batch
+     * @param graph topology with the batch applied
+     * @param touched names of the routers named in the batch
+     * @param report whether to report the footprint of a new table
+     * @param sink where the engine prints its tables, or null to only converge
+     * @return the converged state, the given one unless routers were added
+     */
+    static RoutingState applyBatch(RoutingState state, Graph graph, Collection<String> touched,
+                                   boolean report, TableWriter sink) {
+        NodeIndex index = state.getIndex();
+        Map<String, List<Neighbor>> adjList = graph.getAdjList();
+        if (adjList.size() == index.size()) {
+            // Keep the converged routes and only re-seed the routers whose links changed
+            Adjacency adj = new Adjacency(state.getTable().getAdjacency(), index, adjList, touched);
+            runDistanceVector(state, relinkState(state, adj, report), sink);
+            return state;
+        }
+        NodeIndex newIndex = buildIndexMap(graph);
+        int n = newIndex.size();
+        long[][] minCost = new long[n][n];
+        Adjacency adj = initializeTables(minCost, newIndex, adjList);
+        // Merge previous state to avoid recomputing from scratch
+        RoutingState merged = mergeState(state, newIndex, minCost, adj, report);
+        runDistanceVector(merged, null, sink);
+        return merged;
+    }
+
+    /**
+     * Moves a converged state to new links between the same routers. Only
+     * the rows of routers whose links changed are rebuilt.
+     * 
+     * @param state converged state, updated in place
+     * @param newAdj direct links of the new topology
+     * @param report whether to report the footprint of the new table
+     * @return ids of the routers whose links changed
+     */
+    private static int[] relinkState(RoutingState state, Adjacency newAdj, boolean report) {
+        int n = state.getIndex().size();
+        int[] identity = new int[n];
+        for (int i = 0; i < n; i++) {
+            identity[i] = i;
+        }
+        DistanceTable oldTable = state.getTable();
+        return state.relink(allocateTable(
+            () -> new DistanceTable(newAdj, oldTable, identity, identity), report));
+    }
+
+    /**
+     * Allocates a distance table and, if requested, reports its memory
+     * footprint on standard error.
+     * 
+     * @param factory creates the table
+     * @param report whether to print the footprint report
+     * @return the created table
+     */
+    private static DistanceTable allocateTable(Supplier<DistanceTable> factory, boolean report) {
+        if (!report) return factory.get();
+        Runtime rt = Runtime.getRuntime();
+        System.gc();
+        long before = rt.totalMemory() - rt.freeMemory();
+        DistanceTable table = factory.get();
+        System.gc();
+        long after = rt.totalMemory() - rt.freeMemory();
+        System.err.println("Distance table footprint: " + table.size() + " routers, "
+                           + table.cellCount() + " cells, "
+                           + table.footprintBytes() + " bytes (measured heap growth "
+                           + (after - before) + " bytes)");
+        return table;
+    }
+
+    /**
+     * Parses the value of the --engine option, exiting on unknown names.
+     * 
+     * @param name engine name, case insensitive
+     * @return the matching engine
+     */
+    private static Engine parseEngine(String name) {
+        for (Engine e : Engine.values()) {
+            if (e.name().equalsIgnoreCase(name)) return e;
+        }
+        System.err.println("Unknown engine: " + name);
+        System.exit(1);
+        return null;
+    }
+
+    /**
+     * Parses the value of the --horizon option, exiting on unknown names.
+     * 
+     * @param name none or poison, case insensitive
+     * @return the matching loop prevention mode
+     */
+    private static Horizon parseHorizon(String name) {
+        for (Horizon h : Horizon.values()) {
+            if (h.name().equalsIgnoreCase(name)) return h;
+        }
+        System.err.println("Unknown horizon: " + name);
+        System.exit(1);
+        return null;
+    }
+
+    /**
+     * Applies one of the options that configure the engines.
+     * 
+     * @param arg a command line argument
+     * @return false if the argument is not such an option
+     */
+    static boolean applyOption(String arg) {
+        if (arg.startsWith("--threads=")) {
+            int threads = Integer.parseInt(arg.substring("--threads=".length()));
+            pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+        } else if (arg.startsWith("--engine=")) {
+            engine = parseEngine(arg.substring("--engine=".length()));
+        } else if (arg.startsWith("--horizon=")) {
+            horizon = parseHorizon(arg.substring("--horizon=".length()));
+        } else if (arg.startsWith("--max-metric=")) {
+            maxMetric = Integer.parseInt(arg.substring("--max-metric=".length()));
+        } else if (arg.startsWith("--link-delay=")) {
+            String delay = arg.substring("--link-delay=".length());
+            linkDelay = "cost".equalsIgnoreCase(delay) ? -1 : Integer.parseInt(delay);
+        } else if (arg.startsWith("--output=")) {
+            String mode = arg.substring("--output=".length());
+            if (!"full".equals(mode) && !"delta".equals(mode)) {
+                System.err.println("Unknown output mode: " + mode);
+                System.exit(1);
+            }
+            deltas = "delta".equals(mode) ? new DistanceDeltas() : null;
+        } else if (arg.startsWith("--metrics=")) {
+            metrics = EngineMetrics.open(arg.substring("--metrics=".length()));
+        } else if ("--stats".equals(arg)) {
+            stats = true;
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads the node definitions and the initial edges, up to the UPDATE keyword.
+     * 
+     * @param tokens input positioned before the first node name
+     * @return the initial topology
+     */
+    static Graph readTopology(InputTokenizer tokens) {
         Graph graph = new Graph();
 
         // Read initial node definitions
-        String token = scanner.next();
-        while (!"START".equals(token)) {
-            graph.addNode(token);
-            token = scanner.next();
+        tokens.next();
+        while (!tokens.is("START")) {
+            graph.addNode(tokens.name());
+            tokens.next();
         }
 
         // Read initial edge definitions
-        token = scanner.next();
-        while (!"UPDATE".equals(token)) {
-            String u = token;
-            String v = scanner.next();
-            int w = Integer.parseInt(scanner.next());
-            graph.addEdge(u, v, w);
-            token = scanner.next();
-        }
-
-        // Build initial routing tables and run algorithm
-        Map<String, Integer> indexMap = buildIndexMap(graph);
-        int n = indexMap.size();
-
-        DistanceList[][] distanceTable = new DistanceList[n][n];
-        Neighbor[][] minCost = new Neighbor[n][n];
-        int[][] neighborCosts = new int[n][n];
-        
-        // Initialize with -1 (indicating no direct connection)
-        for (int i = 0; i < n; i++) {
-            Arrays.fill(neighborCosts[i], -1);
+        tokens.next();
+        while (!tokens.is("UPDATE")) {
+            String u = tokens.name();
+            tokens.next();
+            String v = tokens.name();
+            tokens.next();
+            graph.addEdge(u, v, tokens.number());
+            tokens.next();
         }
+        return graph;
+    }
 
-        initializeTables(neighborCosts, minCost, indexMap, graph.getAdjList());
-        runDistanceVector(neighborCosts, minCost, indexMap, distanceTable);
-
-        // Handle dynamic updates
-        boolean updated = false;
-        token = scanner.next();
-        while (!"END".equals(token)) {
-            String u = token;
-            String v = scanner.next();
-            int w = Integer.parseInt(scanner.next());
-            graph.addEdge(u, v, w);
-            updated = true;
-            token = scanner.next();
+    public static void main(String[] args) {
+        boolean footprint = false;
+        int shards = 0;
+        int workerPort = -1;
+        int daemonPort = -1;
+        int pathCacheSize = 1 << 16;
+        for (String arg : args) {
+            if ("--footprint".equals(arg)) {
+                footprint = true;
+            } else if (arg.startsWith("--shards=")) {
+                shards = Integer.parseInt(arg.substring("--shards=".length()));
+            } else if (arg.startsWith("--worker=")) {
+                workerPort = Integer.parseInt(arg.substring("--worker=".length()));
+            } else if (arg.startsWith("--daemon=")) {
+                daemonPort = Integer.parseInt(arg.substring("--daemon=".length()));
+            } else if (arg.startsWith("--path-cache=")) {
+                pathCacheSize = Integer.parseInt(arg.substring("--path-cache=".length()));
+            } else if (!applyOption(arg)) {
+                System.err.println("Unknown option: " + arg);
+                System.exit(1);
+            }
+        }
+        if (workerPort >= 0) {
+            ShardWorker.serve(workerPort);
+            return;
+        }
+        // The daemon answers queries instead of printing tables
+        TableWriter sink = (daemonPort >= 0) ? null : out;
+        if (daemonPort >= 0 && (shards > 0 || engine == Engine.DIJKSTRA)) {
+            System.err.println("The daemon needs a distance vector engine");
+            System.exit(1);
         }
-        scanner.close();
 
-        // Re-run algorithm if topology was updated
-        if (updated) {
-            Map<String, Integer> updatedIndex = buildIndexMap(graph);
-            int n2 = updatedIndex.size();
+        RoutingState state = null;
+        Graph graph;
+        try {
+            InputTokenizer tokens = new InputTokenizer(new FileInputStream(FileDescriptor.in));
+            graph = readTopology(tokens);
 
-            Neighbor[][] minCost2 = new Neighbor[n2][n2];
-            DistanceList[][] distanceTable2 = new DistanceList[n2][n2];
-            int[][] neighborCosts2 = new int[n2][n2];
-            
-            // Initialize new tables
-            for (int i = 0; i < n2; i++) {
-                Arrays.fill(neighborCosts2[i], -1);
+            // Build initial routing tables and run algorithm
+            NodeIndex indexMap = buildIndexMap(graph);
+            int n = indexMap.size();
+
+            ShardCoordinator coordinator = null;
+            Adjacency links = null;
+            if (shards > 0) {
+                // Workers only see ids and links, so pass on the options that change relaxation
+                coordinator = new ShardCoordinator(shards, Arrays.asList(
+                        "--horizon=" + horizon.name(), "--max-metric=" + maxMetric));
+                links = new Adjacency(indexMap, graph.getAdjList());
+                coordinator.run(indexMap, links);
+                printRoutingTables(out, coordinator::row, indexMap);
+            } else if (engine == Engine.DIJKSTRA) {
+                links = new Adjacency(indexMap, graph.getAdjList());
+                printShortestPaths(indexMap, links);
+            } else {
+                long[][] minCost = new long[n][n];
+                Adjacency adj = initializeTables(minCost, indexMap, graph.getAdjList());
+                state = new RoutingState(indexMap,
+                                         allocateTable(() -> new DistanceTable(adj), footprint),
+                                         minCost);
+                runDistanceVector(state, null, sink);
             }
 
-            initializeTables(neighborCosts2, minCost2, updatedIndex, graph.getAdjList());
-            // Merge previous state to avoid recomputing from scratch
-            mergeState(minCost, indexMap, updatedIndex, minCost2, distanceTable2, distanceTable);
-            runDistanceVector(neighborCosts2, minCost2, updatedIndex, distanceTable2);
+            // Handle dynamic updates: every further UPDATE line starts a new batch,
+            // applied on top of the state the previous batch converged to
+            Set<String> touched = new HashSet<>();
+            tokens.next();
+            while (true) {
+                while (!tokens.is("END") && !tokens.is("UPDATE")) {
+                    String u = tokens.name();
+                    tokens.next();
+                    String v = tokens.name();
+                    tokens.next();
+                    graph.addEdge(u, v, tokens.number());
+                    touched.add(u);
+                    touched.add(v);
+                    tokens.next();
+                }
+
+                // Re-run algorithm if topology was updated
+                if (!touched.isEmpty()) {
+                    if (state != null) {
+                        state = applyBatch(state, graph, touched, footprint, sink);
+                    } else {
+                        if (graph.getAdjList().size() == n) {
+                            // Same routers: only rebuild the links of the routers in the batch
+                            links = new Adjacency(links, indexMap, graph.getAdjList(), touched);
+                        } else {
+                            indexMap = buildIndexMap(graph);
+                            n = indexMap.size();
+                            links = new Adjacency(indexMap, graph.getAdjList());
+                        }
+                        if (coordinator != null) {
+                            coordinator.run(indexMap, links);
+                            printRoutingTables(out, coordinator::row, indexMap);
+                        } else {
+                            printShortestPaths(indexMap, links);
+                        }
+                    }
+                    touched.clear();
+                }
+                if (tokens.is("END")) break;
+                tokens.next();
+            }
+            if (coordinator != null) coordinator.close();
+        } finally {
+            // Tables rendered before a failure still reach the output
+            out.flush();
         }
+        if (daemonPort >= 0) new RoutingDaemon(state, graph, footprint, pathCacheSize).serve(daemonPort);
     }
 }
@@ -0,0 +1,217 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Benchmarks of the hot paths of DistanceVector over topologies from
+ * TopologyGenerator.
+ * Every benchmark is warmed up and then repeated until the measurement time
+ * is used up; results are printed as one line per benchmark, topology and size.
+ *
+ * Usage: java DistanceVectorBenchmark [--benchmarks=parse,initialize,...]
+ *            [--topologies=ring,grid,tree,random,scale-free,fat-tree] [--sizes=10,100,...]
+ *            [--time=MS] [--budget=MS] [engine options of DistanceVector]
+ */
+public class DistanceVectorBenchmark {
+    /** One generated topology with everything the benchmarks start from */
+    private static final class Case {
+        final byte[] input;
+        final Graph graph;
+        final NodeIndex index;
+        /** Converged state, left unchanged by the benchmarks that read it */
+        RoutingState converged;
+
+        Case(String input) {
+            this.input = input.getBytes(StandardCharsets.US_ASCII);
+            this.graph = parse(this.input);
+            this.index = DistanceVector.buildIndexMap(graph);
+        }
+
+        /** @return a state with initialized tables that has not run yet */
+        RoutingState fresh() {
+            int n = index.size();
+            long[][] minCost = new long[n][n];
+            Adjacency adj = DistanceVector.initializeTables(minCost, index, graph.getAdjList());
+            return new RoutingState(index, new DistanceTable(adj), minCost);
+        }
+
+        /**
+         * @return the state the engines converge to, built from shortest paths
+         *         so that large cases do not have to run the engine first
+         */
+        RoutingState converged() {
+            if (converged == null) {
+                RoutingState state = fresh();
+                DistanceTable table = state.getTable();
+                Adjacency adj = table.getAdjacency();
+                long[][] minCost = state.getMinCost();
+                new ShortestPaths(adj, Integer.MAX_VALUE).computeAll(minCost, null);
+                for (int s = 0; s < table.size(); s++) {
+                    int[] nbrs = adj.getNeighbors(s);
+                    int[] costs = adj.getCosts(s);
+                    for (int d = 0; d < table.size(); d++) {
+                        if (d == s) continue;
+                        for (int k = 0; k < nbrs.length; k++) {
+                            table.set(s, d, k, DistanceVector.relaxedCost(costs[k], minCost[nbrs[k]][d], s));
+                        }
+                    }
+                    System.arraycopy(minCost[s], 0, state.getNextMinCost()[s], 0, table.size());
+                }
+                table.takePending();
+                converged = state;
+            }
+            return converged;
+        }
+    }
+
+    /** A measured operation over a case */
+    private interface Benchmark {
+        /** @return a value depending on the work done, so it cannot be optimized away */
+        long run(Case c);
+    }
+
+    /** Receives the tables printed by the print benchmark */
+    private static final TableWriter DISCARD = new TableWriter(OutputStream.nullOutputStream());
+
+    private static final Map<String, Benchmark> BENCHMARKS = new LinkedHashMap<>();
+
+    static {
+        BENCHMARKS.put("parse", c -> parse(c.input).getAdjList().size());
+        BENCHMARKS.put("initialize", c -> {
+            NodeIndex index = DistanceVector.buildIndexMap(c.graph);
+            long[][] minCost = new long[index.size()][index.size()];
+            return DistanceVector.initializeTables(minCost, index, c.graph.getAdjList()).size();
+        });
+        BENCHMARKS.put("run", c -> {
+            int before = DistanceVector.tick;
+            // Only relaxation is timed; printing has its own benchmark
+            DistanceVector.runDistanceVector(c.fresh(), null, null);
+            return DistanceVector.tick - before;
+        });
+        BENCHMARKS.put("findMinHop", c -> {
+            DistanceTable table = c.converged().getTable();
+            long sum = 0;
+            for (int s = 0; s < table.size(); s++) {
+                for (int d = 0; d < table.size(); d++) {
+                    sum += DistanceVector.findMinHop(table, s, d);
+                }
+            }
+            return sum;
+        });
+        BENCHMARKS.put("merge", c -> {
+            // Attach one more router to the converged topology
+            Graph grown = parse(c.input);
+            grown.addEdge("R0", "Rnew", 1);
+            NodeIndex index = DistanceVector.buildIndexMap(grown);
+            long[][] minCost = new long[index.size()][index.size()];
+            Adjacency adj = DistanceVector.initializeTables(minCost, index, grown.getAdjList());
+            return DistanceVector.mergeState(c.converged(), index, minCost, adj, false).getTable().size();
+        });
+        BENCHMARKS.put("print", c -> {
+            RoutingState state = c.converged();
+            DistanceVector.printDistanceTables(DISCARD, state.getTable(), state.getIndex());
+            DistanceVector.printRoutingTables(DISCARD, state.getMinCost(), state.getIndex());
+            DISCARD.flush();
+            return state.getIndex().size();
+        });
+    }
+
+    private static Graph parse(byte[] input) {
+        return DistanceVector.readTopology(new InputTokenizer(new ByteArrayInputStream(input)));
+    }
+
+    private static List<String> split(String value) {
+        return Arrays.asList(value.split(","));
+    }
+
+    public static void main(String[] args) {
+        List<String> benchmarks = new ArrayList<>(BENCHMARKS.keySet());
+        List<String> topologies = Arrays.asList("ring", "grid", "random", "scale-free");
+        List<String> sizes = Arrays.asList("10", "100", "1000", "5000");
+        long timeMs = 1000;
+        // Sizes whose estimated iteration time exceeds this are skipped
+        long budgetMs = 60_000;
+        for (String arg : args) {
+            if (arg.startsWith("--benchmarks=")) {
+                benchmarks = split(arg.substring("--benchmarks=".length()));
+            } else if (arg.startsWith("--topologies=")) {
+                topologies = split(arg.substring("--topologies=".length()));
+            } else if (arg.startsWith("--sizes=")) {
+                sizes = split(arg.substring("--sizes=".length()));
+            } else if (arg.startsWith("--time=")) {
+                timeMs = Long.parseLong(arg.substring("--time=".length()));
+            } else if (arg.startsWith("--budget=")) {
+                budgetMs = Long.parseLong(arg.substring("--budget=".length()));
+            } else if (!DistanceVector.applyOption(arg)) {
+                System.err.println("Unknown option: " + arg);
+                System.exit(1);
+            }
+        }
+
+        System.out.printf("%-11s %-11s %6s %8s %12s %12s%n",
+                          "benchmark", "topology", "n", "ops", "ms/op", "ticks/s");
+        long sink = 0;
+        for (String name : topologies) {
+            TopologyGenerator.Family family =
+                    TopologyGenerator.Family.valueOf(name.toUpperCase().replace('-', '_'));
+            // Time of one iteration at the previous size, per benchmark
+            Map<String, double[]> previous = new HashMap<>();
+            for (String size : sizes) {
+                int degree = TopologyGenerator.defaultDegree(family);
+                if (family == TopologyGenerator.Family.FAT_TREE) {
+                    // A k-ary fat tree has 5k^2/4 switches, so size it by k
+                    degree = 2 * (int) Math.ceil(Math.sqrt(Integer.parseInt(size) / 5.0));
+                }
+                TopologyGenerator generator = new TopologyGenerator(
+                        family, Integer.parseInt(size), degree, "uniform:1:10", 42);
+                int n = generator.getNodes();
+                StringBuilder input = new StringBuilder();
+                try {
+                    generator.write(input, 0, false, false);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                Case c = new Case(input.toString());
+                for (String b : benchmarks) {
+                    Benchmark benchmark = BENCHMARKS.get(b);
+                    if (benchmark == null) {
+                        System.err.println("Unknown benchmark: " + b);
+                        System.exit(1);
+                    }
+                    double[] last = previous.get(b);
+                    if (last != null) {
+                        // Table work grows up to n^3, so extrapolate cubically
+                        double estimate = last[1] * Math.pow(n / last[0], 3);
+                        if (estimate > budgetMs) {
+                            System.out.printf("%-11s %-11s %6d   skipped, estimated %.0f s per op%n",
+                                              b, name, n, estimate / 1000);
+                            continue;
+                        }
+                    }
+
+                    // Warm up for half the measurement time, at least once
+                    long end = System.nanoTime() + timeMs * 500_000;
+                    do {
+                        sink += benchmark.run(c);
+                    } while (System.nanoTime() < end);
+
+                    long ops = 0;
+                    long ticks = 0;
+                    long start = System.nanoTime();
+                    end = start + timeMs * 1_000_000;
+                    do {
+                        long result = benchmark.run(c);
+                        sink += result;
+                        ticks += result;
+                        ops++;
+                    } while (System.nanoTime() < end);
+                    double ms = (System.nanoTime() - start) / 1e6;
+                    previous.put(b, new double[] {n, ms / ops});
+                    String rate = (ticks > 0 && "run".equals(b)) ? String.format("%12.0f", ticks / (ms / 1000)) : "";
+                    System.out.printf("%-11s %-11s %6d %8d %12.3f %s%n", b, name, n, ops, ms / ops, rate);
+                }
+            }
+        }
+        if (sink == 42) System.out.println();
+    }
+}
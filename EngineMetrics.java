@@ -0,0 +1,222 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Per-tick counters of the tick based engines, exposed as the MBean
+ * DistanceVector:type=EngineMetrics and optionally written as one CSV line
+ * per tick:
+ * <pre>
+ * tick,relaxations,entries_changed,next_hop_changes,wall_ns,allocated_bytes,converged
+ * </pre>
+ * Every run ends with a pass that changes nothing. It is logged with
+ * converged set to 1 and the number of the tick the next run starts with,
+ * so tick and converged together identify a line; the printed ticks have
+ * converged set to 0.
+ * The engines only call into this class when metrics are enabled. Relaxing
+ * routers add their counts once per router, so concurrent ticks do not
+ * contend on every relaxation.
+ */
+public class EngineMetrics implements EngineMetricsMBean {
+    private final LongAdder relaxations = new LongAdder();
+    private final LongAdder entriesChanged = new LongAdder();
+    private final LongAdder nextHopChanges = new LongAdder();
+    /** Where the per-tick lines go, null for the MBean only */
+    private final PrintWriter log;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private long tickStart;
+    private long allocatedStart;
+
+    private volatile long tick;
+    private volatile long ticks;
+    private volatile long convergencePasses;
+    private volatile boolean lastConverged;
+    private volatile long lastRelaxations;
+    private volatile long lastEntriesChanged;
+    private volatile long lastNextHopChanges;
+    private volatile long lastTickNanos;
+    private volatile long lastAllocatedBytes;
+    private volatile long totalRelaxations;
+    private volatile long totalEntriesChanged;
+    private volatile long totalNextHopChanges;
+    private volatile long totalTickNanos;
+
+    /**
+     * Creates the metrics and registers them with the platform MBean server.
+     *
+     * @param log where to write the per-tick lines, null for none
+     */
+    public EngineMetrics(Writer log) {
+        this.log = (log == null) ? null : new PrintWriter(log);
+        if (this.log != null) {
+            this.log.println("tick,relaxations,entries_changed,next_hop_changes,wall_ns,allocated_bytes,converged");
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    this, new ObjectName("DistanceVector:type=EngineMetrics"));
+        } catch (JMException e) {
+            System.err.println("Engine metrics are not available over JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Parses the value of the --metrics option.
+     *
+     * @param target jmx for the MBean only, - for a log on standard error, else a log file
+     * @return the enabled metrics
+     */
+    public static EngineMetrics open(String target) {
+        if ("jmx".equals(target)) return new EngineMetrics(null);
+        if ("-".equals(target)) return new EngineMetrics(new OutputStreamWriter(System.err));
+        try {
+            return new EngineMetrics(new BufferedWriter(new FileWriter(target)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Total bytes allocated by the live threads, -1 if the JVM cannot tell */
+    private long allocatedBytes() {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        if (!bean.isThreadAllocatedMemoryEnabled()) return -1;
+        long sum = 0;
+        for (long bytes : bean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+            if (bytes > 0) sum += bytes;
+        }
+        return sum;
+    }
+
+    /** Called before the first relaxation of a tick */
+    public void startTick() {
+        relaxations.reset();
+        entriesChanged.reset();
+        nextHopChanges.reset();
+        allocatedStart = allocatedBytes();
+        tickStart = System.nanoTime();
+    }
+
+    /**
+     * Adds the work of one router in the current tick.
+     *
+     * @param relaxed distance table entries recomputed
+     * @param changed entries whose cost changed
+     * @param moved best routes whose next hop changed
+     */
+    public void add(int relaxed, int changed, int moved) {
+        relaxations.add(relaxed);
+        entriesChanged.add(changed);
+        nextHopChanges.add(moved);
+    }
+
+    /**
+     * Called after the last relaxation of a tick.
+     *
+     * @param number tick counter of the finished tick
+     * @param converged whether the tick changed nothing and ended the run;
+     *                  such a pass is not a tick of its own
+     */
+    public void endTick(long number, boolean converged) {
+        long nanos = System.nanoTime() - tickStart;
+        long allocated = (allocatedStart < 0) ? -1 : allocatedBytes() - allocatedStart;
+        lastRelaxations = relaxations.sum();
+        lastEntriesChanged = entriesChanged.sum();
+        lastNextHopChanges = nextHopChanges.sum();
+        lastTickNanos = nanos;
+        lastAllocatedBytes = allocated;
+        totalRelaxations += lastRelaxations;
+        totalEntriesChanged += lastEntriesChanged;
+        totalNextHopChanges += lastNextHopChanges;
+        totalTickNanos += nanos;
+        lastConverged = converged;
+        if (converged) {
+            convergencePasses++;
+        } else {
+            ticks++;
+            tick = number;
+        }
+        if (log != null) {
+            log.append(Long.toString(number)).append(',')
+               .append(Long.toString(lastRelaxations)).append(',')
+               .append(Long.toString(lastEntriesChanged)).append(',')
+               .append(Long.toString(lastNextHopChanges)).append(',')
+               .append(Long.toString(nanos)).append(',')
+               .append(Long.toString(allocated)).append(',')
+               .append(converged ? '1' : '0').append('\n');
+        }
+    }
+
+    /** Writes out the buffered log lines */
+    public void flush() {
+        if (log != null) log.flush();
+    }
+
+    @Override
+    public long getTick() {
+        return tick;
+    }
+
+    @Override
+    public long getTicks() {
+        return ticks;
+    }
+
+    @Override
+    public long getConvergencePasses() {
+        return convergencePasses;
+    }
+
+    @Override
+    public boolean isLastConverged() {
+        return lastConverged;
+    }
+
+    @Override
+    public long getLastRelaxations() {
+        return lastRelaxations;
+    }
+
+    @Override
+    public long getLastEntriesChanged() {
+        return lastEntriesChanged;
+    }
+
+    @Override
+    public long getLastNextHopChanges() {
+        return lastNextHopChanges;
+    }
+
+    @Override
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    @Override
+    public long getLastAllocatedBytes() {
+        return lastAllocatedBytes;
+    }
+
+    @Override
+    public long getTotalRelaxations() {
+        return totalRelaxations;
+    }
+
+    @Override
+    public long getTotalEntriesChanged() {
+        return totalEntriesChanged;
+    }
+
+    @Override
+    public long getTotalNextHopChanges() {
+        return totalNextHopChanges;
+    }
+
+    @Override
+    public long getTotalTickNanos() {
+        return totalTickNanos;
+    }
+}
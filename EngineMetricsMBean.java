@@ -0,0 +1,37 @@
+/**
+ * Management interface of EngineMetrics. The Last attributes describe the
+ * most recently finished tick or convergence pass, the Total attributes
+ * every tick and convergence pass so far.
+ */
+public interface EngineMetricsMBean {
+    /** @return the tick counter of the most recently finished tick, not counting convergence passes */
+    long getTick();
+
+    /** @return number of ticks finished so far, not counting convergence passes */
+    long getTicks();
+
+    /** @return number of runs that ended with a pass that changed nothing */
+    long getConvergencePasses();
+
+    /** @return whether the Last attributes describe a convergence pass */
+    boolean isLastConverged();
+
+    long getLastRelaxations();
+
+    long getLastEntriesChanged();
+
+    long getLastNextHopChanges();
+
+    long getLastTickNanos();
+
+    /** @return bytes allocated by all threads during the last tick, -1 if the JVM cannot tell */
+    long getLastAllocatedBytes();
+
+    long getTotalRelaxations();
+
+    long getTotalEntriesChanged();
+
+    long getTotalNextHopChanges();
+
+    long getTotalTickNanos();
+}
@@ -0,0 +1,178 @@
+import java.util.*;
+
+/**
+ * Discrete-event simulation of the distance vector protocol.
+ * There are no global ticks: whenever a router's routes change it sends the
+ * changed routes to its neighbors as an advertisement event that is delivered
+ * after the link delay. A single priority queue orders all events by delivery
+ * time, so only routers that receive changed routes do any work and the cost
+ * of a run is bounded by the number of messages.
+ */
+class EventEngine {
+    /** Routes advertised by one router to one neighbor */
+    private static final class Advert {
+        final long time;
+        final long seq;
+        final int from;
+        final int to;
+        final int[] dests;
+        final long[] routes;
+
+        Advert(long time, long seq, int from, int to, int[] dests, long[] routes) {
+            this.time = time;
+            this.seq = seq;
+            this.from = from;
+            this.to = to;
+            this.dests = dests;
+            this.routes = routes;
+        }
+    }
+
+    /** Delivery order: by time, then by send order so each link stays FIFO */
+    private static final Comparator<Advert> ORDER = (a, b) -> (a.time != b.time)
+            ? Long.compare(a.time, b.time) : Long.compare(a.seq, b.seq);
+
+    private final RoutingState state;
+    private final DistanceTable table;
+    private final Adjacency adj;
+    /** Delay of every link, or -1 to use the link cost as its delay */
+    private final int linkDelay;
+    private final PriorityQueue<Advert> queue = new PriorityQueue<>(ORDER);
+
+    /** Destinations whose route changed while handling the current event */
+    private final int[] outgoing;
+    private int outgoingCount;
+
+    private long now;
+    private long seq;
+    private long messages;
+    private long routesSent;
+
+    /**
+     * @param state routing state of the current topology
+     * @param linkDelay delay of every link in simulated time units, or -1 to
+     *                  use each link's cost as its delay
+     */
+    public EventEngine(RoutingState state, int linkDelay) {
+        this.state = state;
+        this.table = state.getTable();
+        this.adj = table.getAdjacency();
+        this.linkDelay = linkDelay;
+        this.outgoing = new int[table.size()];
+    }
+
+    /**
+     * Runs the simulation until no advertisement is in flight. The converged
+     * routes are left in the state; a summary is reported on standard error.
+     *
+     * @param seeds routers whose links changed since the state last converged,
+     *              or null if every router starts from scratch
+     */
+    public void run(int[] seeds) {
+        long start = System.nanoTime();
+        table.takePending();
+
+        // At time 0 the starting routers learn their neighbors' current vectors
+        if (seeds == null) {
+            for (int r = 0; r < table.size(); r++) {
+                relaxRow(r);
+                send(r);
+            }
+        } else {
+            for (int r : seeds) {
+                relaxRow(r);
+                send(r);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            Advert advert = queue.poll();
+            now = advert.time;
+            receive(advert);
+            send(advert.to);
+        }
+
+        DistanceVector.reportRun(messages, "messages carrying " + routesSent
+                                 + " routes by time " + now, start);
+    }
+
+    /**
+     * Relaxes every destination of a router against its neighbors' current routes.
+     *
+     * @param r id of the router
+     */
+    private void relaxRow(int r) {
+        long[][] minCost = state.getMinCost();
+        int[] nbrs = adj.getNeighbors(r);
+        int[] costs = adj.getCosts(r);
+        for (int d = 0; d < table.size(); d++) {
+            if (d == r) continue;
+            for (int k = 0; k < nbrs.length; k++) {
+                table.set(r, d, k, DistanceVector.relaxedCost(costs[k], minCost[nbrs[k]][d], r));
+            }
+            select(r, d);
+        }
+    }
+
+    /**
+     * Applies an advertisement to the distance table of its receiver.
+     *
+     * @param advert the delivered advertisement
+     */
+    private void receive(Advert advert) {
+        int r = advert.to;
+        int k = adj.slot(r, advert.from);
+        int cost = adj.getCosts(r)[k];
+        for (int j = 0; j < advert.dests.length; j++) {
+            int d = advert.dests[j];
+            if (d == r) continue;
+            int newCost = DistanceVector.relaxedCost(cost, advert.routes[j], r);
+            if (table.get(r, d, k) != newCost) {
+                table.set(r, d, k, newCost);
+                select(r, d);
+            }
+        }
+    }
+
+    /**
+     * Re-selects the best route of a router to a destination and queues the
+     * destination for advertisement if neighbors would see a difference.
+     */
+    private void select(int r, int d) {
+        long[][] minCost = state.getMinCost();
+        long best = DistanceVector.findMinHop(table, r, d);
+        long old = minCost[r][d];
+        if (best == old) return;
+        minCost[r][d] = best;
+        // Keep the second route buffer identical for the next run
+        state.getNextMinCost()[r][d] = best;
+        if (DistanceVector.visibleChange(old, best)) {
+            outgoing[outgoingCount++] = d;
+        }
+    }
+
+    /**
+     * Sends the routes queued for advertisement to every neighbor of a router.
+     *
+     * @param r id of the sending router
+     */
+    private void send(int r) {
+        if (outgoingCount == 0) return;
+        int[] dests = Arrays.copyOf(outgoing, outgoingCount);
+        long[] routes = new long[outgoingCount];
+        long[] row = state.getMinCost()[r];
+        for (int j = 0; j < outgoingCount; j++) {
+            routes[j] = row[dests[j]];
+        }
+        outgoingCount = 0;
+
+        int[] nbrs = adj.getNeighbors(r);
+        int[] costs = adj.getCosts(r);
+        for (int k = 0; k < nbrs.length; k++) {
+            long delay = (linkDelay < 0) ? costs[k] : linkDelay;
+            queue.add(new Advert(now + delay, seq++, r, nbrs[k], dests, routes));
+            messages++;
+            routesSent += dests.length;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import java.util.*;
+
+/**
+ * Represents a network graph using an adjacency list structure.
+ * Supports adding nodes, adding edges with weights, and removing edges.
+ */
+class Graph {
+    private final Map<String, List<Neighbor>> adjList = new HashMap<>();
+
+    public Graph() {
+    }
+
+    /**
+     * Copies a graph so that changing either leaves the other as it was.
+     *
+     * @param other the graph to copy
+     */
+    public Graph(Graph other) {
+        for (Map.Entry<String, List<Neighbor>> e : other.adjList.entrySet()) {
+            List<Neighbor> list = new ArrayList<>(e.getValue().size());
+            for (Neighbor neigh : e.getValue()) {
+                list.add(new Neighbor(neigh.getName(), neigh.getCost()));
+            }
+            adjList.put(e.getKey(), list);
+        }
+    }
+
+    public Map<String, List<Neighbor>> getAdjList() {
+        return adjList;
+    }
+
+    public void addNode(String node) {
+        adjList.putIfAbsent(node, new ArrayList<>());
+    }
+
+    public void addEdge(String u, String v, int weight) {
+        if (weight >= 0) {
+            // Add bidirectional edge with positive weight
+            adjList.computeIfAbsent(u, k -> new ArrayList<>())
+                   .add(new Neighbor(v, weight));
+            adjList.computeIfAbsent(v, k -> new ArrayList<>())
+                   .add(new Neighbor(u, weight));
+        } else {
+            // Negative weight indicates edge removal
+            updateEdge(u, v);
+        }
+    }
+
+    public void updateEdge(String u, String v) {
+        // Remove v from u's neighbor list
+        List<Neighbor> listU = adjList.get(u);
+        if (listU != null) {
+            listU.removeIf(neighbor -> neighbor.getName().equals(v));
+        }
+        
+        // Remove u from v's neighbor list
+        List<Neighbor> listV = adjList.get(v);
+        if (listV != null) {
+            listV.removeIf(neighbor -> neighbor.getName().equals(u));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Whitespace separated tokenizer for the START/UPDATE/END input format.
+ * Works directly on a large byte buffer: keywords are matched and weights
+ * are parsed in place, and each distinct router name is decoded to a String
+ * only once, so repeated names do not produce garbage.
+ */
+class InputTokenizer {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final InputStream in;
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private int limit;
+    private int start;
+    private int end;
+
+    /** Open addressing table of decoded names, keyed by their bytes */
+    private byte[][] keys = new byte[1024][];
+    private String[] names = new String[1024];
+    private int nameCount;
+
+    public InputTokenizer(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Advances to the next token.
+     * 
+     * @throws NoSuchElementException if the input is exhausted
+     */
+    public void next() {
+        int pos = end;
+        // Skip whitespace
+        while (true) {
+            if (pos == limit) {
+                pos = fill(pos, pos);
+                if (pos == limit) throw new NoSuchElementException();
+            }
+            if ((buf[pos] & 0xff) > ' ') break;
+            pos++;
+        }
+        // Scan the token, refilling the buffer if it runs past the end
+        int tokenStart = pos;
+        while (true) {
+            if (pos == limit) {
+                pos = fill(tokenStart, pos);
+                tokenStart = 0;
+                if (pos == limit) break;
+            }
+            if ((buf[pos] & 0xff) <= ' ') break;
+            pos++;
+        }
+        start = tokenStart;
+        end = pos;
+    }
+
+    /**
+     * Moves the bytes from keep onwards to the front of the buffer and reads more input.
+     * 
+     * @param keep first byte that must be preserved
+     * @param pos current position, at or after keep
+     * @return the new position of pos
+     */
+    private int fill(int keep, int pos) {
+        int kept = limit - keep;
+        if (kept == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        } else if (keep > 0) {
+            System.arraycopy(buf, keep, buf, 0, kept);
+        }
+        limit = kept;
+        try {
+            int read = in.read(buf, limit, buf.length - limit);
+            if (read > 0) limit += read;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return pos - keep;
+    }
+
+    /** @return true if the current token is exactly the given ASCII keyword */
+    public boolean is(String keyword) {
+        if (end - start != keyword.length()) return false;
+        for (int i = 0; i < keyword.length(); i++) {
+            if (buf[start + i] != keyword.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /** @return the current token parsed as a decimal int, with an optional sign */
+    public int number() {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (buf[pos] == '-' || buf[pos] == '+')) {
+            negative = buf[pos] == '-';
+            pos++;
+        }
+        if (pos == end) throw new NumberFormatException("For input string: \"" + text() + "\"");
+        long value = 0;
+        for (; pos < end; pos++) {
+            int digit = buf[pos] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("For input string: \"" + text() + "\"");
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException("For input string: \"" + text() + "\"");
+            }
+        }
+        if (negative) value = -value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For input string: \"" + text() + "\"");
+        }
+        return (int) value;
+    }
+
+    /** @return the current token as a router name, shared between equal tokens */
+    public String name() {
+        int mask = keys.length - 1;
+        int slot = hash(buf, start, end) & mask;
+        while (keys[slot] != null) {
+            if (matches(keys[slot])) return names[slot];
+            slot = (slot + 1) & mask;
+        }
+        String name = new String(buf, start, end - start);
+        keys[slot] = Arrays.copyOfRange(buf, start, end);
+        names[slot] = name;
+        if (++nameCount * 2 > keys.length) rehash();
+        return name;
+    }
+
+    private boolean matches(byte[] key) {
+        if (key.length != end - start) return false;
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != buf[start + i]) return false;
+        }
+        return true;
+    }
+
+    private void rehash() {
+        byte[][] oldKeys = keys;
+        String[] oldNames = names;
+        keys = new byte[oldKeys.length * 2][];
+        names = new String[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            byte[] key = oldKeys[i];
+            if (key == null) continue;
+            int slot = hash(key, 0, key.length) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            names[slot] = oldNames[i];
+        }
+    }
+
+    /** FNV-1a hash of a byte range */
+    private static int hash(byte[] bytes, int from, int to) {
+        int hash = 0x811c9dc5;
+        for (int i = from; i < to; i++) {
+            hash = (hash ^ bytes[i]) * 0x01000193;
+        }
+        return hash;
+    }
+
+    private String text() {
+        return new String(buf, start, end - start);
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ * Represents a neighboring node in the network graph with its associated cost.
+ * Used to store adjacency information for each node.
+ */
+class Neighbor {
+    private String name;
+    private int cost;
+
+    public Neighbor(String name, int cost) {
+        this.name = name;
+        this.cost = cost;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    public void setCost(int cost) {
+        this.cost = cost;
+    }
+}
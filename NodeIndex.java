@@ -0,0 +1,53 @@
+import java.util.*;
+
+/**
+ * Symbol table that assigns dense integer ids to router names.
+ * Ids follow alphabetical order, so comparing two ids gives the same result
+ * as comparing the names they stand for.
+ */
+class NodeIndex {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final String[] names;
+    private final int[] order;
+
+    public NodeIndex(Collection<String> nodes) {
+        names = nodes.toArray(new String[0]);
+        Arrays.sort(names); // Ensure consistent alphabetical ordering
+        for (int i = 0; i < names.length; i++) {
+            ids.put(names[i], i);
+        }
+        // Tables are printed in the iteration order of the name lookup map
+        order = new int[names.length];
+        int k = 0;
+        for (int id : ids.values()) {
+            order[k++] = id;
+        }
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * @param name a router name
+     * @return the id of the router, or -1 if it is not part of this index
+     */
+    public int getId(String name) {
+        Integer id = ids.get(name);
+        return (id == null) ? -1 : id;
+    }
+
+    /** @return ids in the order routers are listed in the printed tables */
+    public int[] getOrder() {
+        return order;
+    }
+
+    /** @return true if both indexes assign the same ids to the same names */
+    public boolean sameNodes(NodeIndex other) {
+        return Arrays.equals(names, other.names);
+    }
+}
@@ -0,0 +1,196 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reconstructs hop by hop paths from the next hops of a routing snapshot and
+ * keeps the most recently used ones in a bounded LRU cache.
+ * A path is a chain of immutable hops, so a path that runs into the router
+ * of a cached path reuses that path as its suffix instead of walking it again.
+ * The paths of one epoch live in a generation that is published through a
+ * volatile field. Moving the cache to the next epoch builds the next
+ * generation from the paths that follow none of the routes the new snapshot
+ * lists as rerouted, and then swaps it in; paths only hold routers, so a
+ * route whose cost alone changed keeps them valid.
+ * Lookups never take a lock, so they do not wait for an advance in progress.
+ * Least recently used paths are evicted in batches by whichever thread finds
+ * the cache over capacity, so it may briefly hold a few more paths.
+ */
+class PathCache {
+    /** One router of a path and the rest of the path after it */
+    static final class Path {
+        final int node;
+        /** Rest of the path, null at the destination */
+        final Path next;
+
+        Path(int node, Path next) {
+            this.node = node;
+            this.next = next;
+        }
+    }
+
+    /** A cached path and when it was last used */
+    private static final class Entry {
+        final Path path;
+        volatile long used;
+
+        Entry(Path path, long used) {
+            this.path = path;
+            this.used = used;
+        }
+    }
+
+    /** Cached paths of one snapshot by src << 32 | dest */
+    private static final class Generation {
+        final RoutingSnapshot snapshot;
+        final ConcurrentHashMap<Long, Entry> paths;
+
+        Generation(RoutingSnapshot snapshot, ConcurrentHashMap<Long, Entry> paths) {
+            this.snapshot = snapshot;
+            this.paths = paths;
+        }
+    }
+
+    private final int capacity;
+    /** Paths of the snapshot the cache is at */
+    private volatile Generation current;
+    /** Orders the uses of cached paths */
+    private final AtomicLong clock = new AtomicLong();
+    /** Held while evicting, so only one thread sorts the paths at a time */
+    private final ReentrantLock evicting = new ReentrantLock();
+
+    /**
+     * @param capacity maximum number of cached paths
+     * @param snapshot routes to start from
+     */
+    public PathCache(int capacity, RoutingSnapshot snapshot) {
+        this.capacity = capacity;
+        this.current = new Generation(snapshot, new ConcurrentHashMap<>());
+    }
+
+    private static long key(int src, int dest) {
+        return (long) src << 32 | dest;
+    }
+
+    private Path lookup(Generation gen, int src, int dest) {
+        Entry e = gen.paths.get(key(src, dest));
+        if (e == null) return null;
+        e.used = clock.incrementAndGet();
+        return e.path;
+    }
+
+    /**
+     * Returns the path from src to dest in the given snapshot. Paths of the
+     * snapshot the cache is at are cached; older or newer snapshots are
+     * walked without the cache.
+     *
+     * @param routes snapshot to follow
+     * @param src source router id
+     * @param dest destination router id
+     * @return routers from src to dest, or null if dest is unreachable
+     * @throws IllegalStateException if the next hops form a loop
+     */
+    public Path path(RoutingSnapshot routes, int src, int dest) {
+        Generation gen = current;
+        boolean cached = routes == gen.snapshot;
+        if (cached) {
+            Path path = lookup(gen, src, dest);
+            if (path != null) return path;
+        }
+
+        // Walk the next hops until the destination or a cached suffix
+        int n = routes.getIndex().size();
+        int[] hops = new int[8];
+        int count = 0;
+        Path suffix = null;
+        int node = src;
+        while (node != dest) {
+            if (cached && node != src) {
+                suffix = lookup(gen, node, dest);
+                if (suffix != null) break;
+            }
+            if (count == n) {
+                throw new IllegalStateException("Routing loop on the path from "
+                        + routes.getIndex().getName(src) + " to " + routes.getIndex().getName(dest));
+            }
+            int via = Route.via(routes.route(node, dest));
+            if (via < 0) return null;
+            if (count == hops.length) hops = Arrays.copyOf(hops, 2 * count);
+            hops[count++] = node;
+            node = via;
+        }
+
+        Path path = (suffix != null) ? suffix : new Path(dest, null);
+        for (int i = count - 1; i >= 0; i--) {
+            path = new Path(hops[i], path);
+        }
+        if (cached) put(gen, key(src, dest), path);
+        return path;
+    }
+
+    /** Caches a path, evicting the least recently used ones beyond the capacity */
+    private void put(Generation gen, long key, Path path) {
+        gen.paths.put(key, new Entry(path, clock.incrementAndGet()));
+        if (gen.paths.size() <= capacity || !evicting.tryLock()) return;
+        try {
+            // Evict down to 7/8 of the capacity so that sorting is amortized over many puts
+            int keep = capacity - capacity / 8;
+            List<Map.Entry<Long, Entry>> entries = new ArrayList<>(gen.paths.entrySet());
+            if (entries.size() <= keep) return;
+            long[] used = new long[entries.size()];
+            for (int i = 0; i < used.length; i++) {
+                used[i] = entries.get(i).getValue().used;
+            }
+            Arrays.sort(used);
+            long cutoff = used[used.length - keep - 1];
+            for (Map.Entry<Long, Entry> e : entries) {
+                if (e.getValue().used <= cutoff) gen.paths.remove(e.getKey(), e.getValue());
+            }
+        } finally {
+            evicting.unlock();
+        }
+    }
+
+    /**
+     * Moves the cache to a newer snapshot. Paths following a route that got
+     * a new next hop in the next epoch are dropped; if the snapshot is not
+     * the direct successor of the current one, or has other routers,
+     * everything is. Only one thread may advance the cache at a time.
+     *
+     * @param next the new snapshot
+     */
+    public void advance(RoutingSnapshot next) {
+        Generation gen = current;
+        long[] rerouted = next.getRerouted();
+        if (rerouted == null || next.getEpoch() != gen.snapshot.getEpoch() + 1
+                || next.getIndex() != gen.snapshot.getIndex()) {
+            current = new Generation(next, new ConcurrentHashMap<>());
+            return;
+        }
+        if (rerouted.length == 0) {
+            // Every cached path is still walked the same way, even ones added meanwhile
+            current = new Generation(next, gen.paths);
+            return;
+        }
+        Set<Long> changed = new HashSet<>(rerouted.length * 2);
+        for (long route : rerouted) {
+            changed.add(route);
+        }
+        ConcurrentHashMap<Long, Entry> kept = new ConcurrentHashMap<>(gen.paths.size() * 2);
+        for (Map.Entry<Long, Entry> e : gen.paths.entrySet()) {
+            int dest = (int) (long) e.getKey();
+            boolean valid = true;
+            for (Path p = e.getValue().path; p.next != null && valid; p = p.next) {
+                valid = !changed.contains(key(p.node, dest));
+            }
+            if (valid) kept.put(e.getKey(), e.getValue());
+        }
+        current = new Generation(next, kept);
+    }
+
+    /** @return number of cached paths */
+    public int size() {
+        return current.paths.size();
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * Packs a best path (next hop id, cost) into one primitive long so that
+ * route selection never allocates. The next hop id is kept in the high
+ * 32 bits and the cost in the low 32 bits.
+ */
+final class Route {
+    /** Route of an unreachable destination */
+    public static final long NONE = pack(-1, -1);
+
+    private Route() {
+    }
+
+    public static long pack(int via, int cost) {
+        return ((long) via << 32) | (cost & 0xffffffffL);
+    }
+
+    /** @return id of the next hop, or -1 if the destination is unreachable */
+    public static int via(long route) {
+        return (int) (route >> 32);
+    }
+
+    /** @return cost of the route, or -1 if the destination is unreachable */
+    public static int cost(long route) {
+        return (int) route;
+    }
+}
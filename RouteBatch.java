@@ -0,0 +1,44 @@
+import java.util.Arrays;
+
+/**
+ * Route entries (router, destination, packed route) collected for sending
+ * between shards, stored as parallel primitive arrays.
+ */
+class RouteBatch {
+    private int[] routers = new int[16];
+    private int[] dests = new int[16];
+    private long[] routes = new long[16];
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public int getRouter(int i) {
+        return routers[i];
+    }
+
+    public int getDest(int i) {
+        return dests[i];
+    }
+
+    public long getRoute(int i) {
+        return routes[i];
+    }
+
+    public void add(int router, int dest, long route) {
+        if (size == routers.length) {
+            routers = Arrays.copyOf(routers, size * 2);
+            dests = Arrays.copyOf(dests, size * 2);
+            routes = Arrays.copyOf(routes, size * 2);
+        }
+        routers[size] = router;
+        dests[size] = dest;
+        routes[size] = route;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
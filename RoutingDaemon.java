@@ -0,0 +1,250 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps a converged topology in memory and answers route lookups on a
+ * loopback socket. Clients send one command per line and get one reply per
+ * line:
+ * <pre>
+ * ROUTE src dest      dest,via,cost or dest,INF,INF, as in the routing tables
+ * TABLE src           the routing table of src, ended by an empty line
+ * PATH src dest       dest,cost,src hop ... dest or dest,INF,INF
+ * LINK u v cost       queues a link change of this connection, cost -1 removes it
+ * COMMIT              applies the queued changes and converges: OK routers,
+ *                     or ERR with the reason if the engine failed
+ * EPOCH               number of the snapshot lookups are answered from
+ * QUIT                closes the connection
+ * SHUTDOWN            stops the daemon
+ * </pre>
+ * Lookups read an immutable snapshot that is swapped in atomically once a
+ * commit has converged, so they never wait for the engine and never see a
+ * partly converged table. Commits run one at a time; each publishes a new
+ * epoch that shares the unchanged routes of the previous one.
+ * Replies are flushed once no further command is waiting, so pipelined
+ * lookups share a write.
+ */
+class RoutingDaemon {
+    private final boolean footprint;
+    /** Links of the current topology, guarded by this */
+    private Graph graph;
+    /** Converged state of the current topology, guarded by this */
+    private RoutingState state;
+    /** Routes lookups are answered from */
+    private final AtomicReference<RoutingSnapshot> snapshot = new AtomicReference<>();
+    /** Recently reconstructed paths, kept at the epoch of the published snapshot */
+    private final PathCache paths;
+    private ServerSocket server;
+
+    /**
+     * @param state converged state of the topology in graph
+     * @param graph links of the topology, replaced by commits
+     * @param footprint whether to report the footprint of new tables
+     * @param pathCacheSize maximum number of cached paths
+     */
+    public RoutingDaemon(RoutingState state, Graph graph, boolean footprint, int pathCacheSize) {
+        this.state = state;
+        this.graph = graph;
+        this.footprint = footprint;
+        // Changed routes are found through the table from now on
+        state.getTable().trackDirty();
+        snapshot.set(new RoutingSnapshot(0, state.getIndex(), state.getMinCost()));
+        paths = new PathCache(pathCacheSize, snapshot.get());
+    }
+
+    /**
+     * Accepts connections until a client sends SHUTDOWN. Every connection is
+     * served on its own thread, a virtual one when the JVM has them.
+     *
+     * @param port loopback port to listen on, 0 for any free port
+     */
+    public void serve(int port) {
+        Executor executor = ActorEngine.newExecutor(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "routing-daemon");
+            t.setDaemon(true);
+            return t;
+        }));
+        try (ServerSocket socket = new ServerSocket(port, 64, InetAddress.getLoopbackAddress())) {
+            server = socket;
+            System.err.println("Routing daemon listening on port " + socket.getLocalPort());
+            while (true) {
+                Socket client;
+                try {
+                    client = socket.accept();
+                } catch (SocketException e) {
+                    if (socket.isClosed()) return; // shut down
+                    throw e;
+                }
+                executor.execute(() -> handle(client));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Serves the commands of one connection until it is closed */
+    private void handle(Socket client) {
+        List<String[]> pending = new ArrayList<>();
+        try (Socket socket = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()), 1 << 14)) {
+            socket.setTcpNoDelay(true);
+            StringBuilder reply = new StringBuilder();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] words = line.trim().split("\\s+");
+                String command = words[0].toUpperCase();
+                reply.setLength(0);
+                if ("ROUTE".equals(command) && words.length == 3) {
+                    route(reply, words[1], words[2]);
+                } else if ("PATH".equals(command) && words.length == 3) {
+                    path(reply, words[1], words[2]);
+                } else if ("TABLE".equals(command) && words.length == 2) {
+                    table(reply, words[1]);
+                } else if ("LINK".equals(command) && words.length == 4) {
+                    try {
+                        Integer.parseInt(words[3]);
+                        pending.add(words);
+                        reply.append("OK");
+                    } catch (NumberFormatException e) {
+                        reply.append("ERR bad cost ").append(words[3]);
+                    }
+                } else if ("COMMIT".equals(command) && words.length == 1) {
+                    try {
+                        reply.append("OK ").append(commit(pending));
+                    } catch (RuntimeException e) {
+                        // Nothing was published, so the daemon keeps serving the previous epoch
+                        reply.setLength(0);
+                        reply.append("ERR commit failed: ").append(e);
+                    }
+                    pending.clear();
+                } else if ("EPOCH".equals(command) && words.length == 1) {
+                    reply.append(snapshot.get().getEpoch());
+                } else if ("QUIT".equals(command)) {
+                    return;
+                } else if ("SHUTDOWN".equals(command)) {
+                    server.close();
+                    return;
+                } else {
+                    reply.append("ERR unknown command: ").append(line);
+                }
+                out.append(reply).append('\n');
+                if (!in.ready()) out.flush();
+            }
+        } catch (IOException e) {
+            // The client went away; nothing to clean up
+        }
+    }
+
+    /** Appends the route of src to dest in the routing table format */
+    private void route(StringBuilder reply, String src, String dest) {
+        RoutingSnapshot routes = snapshot.get();
+        NodeIndex index = routes.getIndex();
+        int s = index.getId(src);
+        int d = index.getId(dest);
+        if (s < 0 || d < 0) {
+            reply.append("ERR unknown router ").append(s < 0 ? src : dest);
+            return;
+        }
+        appendRoute(reply, index, d, routes.route(s, d));
+    }
+
+    /** Appends the cost and the routers of the path from src to dest */
+    private void path(StringBuilder reply, String src, String dest) {
+        RoutingSnapshot routes = snapshot.get();
+        NodeIndex index = routes.getIndex();
+        int s = index.getId(src);
+        int d = index.getId(dest);
+        if (s < 0 || d < 0) {
+            reply.append("ERR unknown router ").append(s < 0 ? src : dest);
+            return;
+        }
+        try {
+            PathCache.Path path = paths.path(routes, s, d);
+            reply.append(dest).append(',');
+            if (path == null) {
+                reply.append("INF,INF");
+                return;
+            }
+            reply.append(Route.cost(routes.route(s, d))).append(',');
+            for (PathCache.Path p = path; p != null; p = p.next) {
+                reply.append(index.getName(p.node)).append(p.next != null ? " " : "");
+            }
+        } catch (IllegalStateException e) {
+            reply.setLength(0);
+            reply.append("ERR ").append(e.getMessage());
+        }
+    }
+
+    /** Appends the routing table of src, one line per other router, and an empty line */
+    private void table(StringBuilder reply, String src) {
+        RoutingSnapshot routes = snapshot.get();
+        NodeIndex index = routes.getIndex();
+        int s = index.getId(src);
+        if (s < 0) {
+            reply.append("ERR unknown router ").append(src);
+            return;
+        }
+        for (int d : index.getOrder()) {
+            if (d == s) continue;
+            appendRoute(reply, index, d, routes.route(s, d));
+            reply.append('\n');
+        }
+    }
+
+    private static void appendRoute(StringBuilder reply, NodeIndex index, int dest, long route) {
+        reply.append(index.getName(dest)).append(',');
+        int via = Route.via(route);
+        if (via < 0) {
+            reply.append("INF,INF");
+        } else {
+            reply.append(index.getName(via)).append(',').append(Route.cost(route));
+        }
+    }
+
+    /**
+     * Applies link changes, converges and publishes the new routes. The
+     * changes are applied to copies of the links and the state, which only
+     * replace the current ones once the engine converged, so a commit that
+     * fails leaves the daemon exactly as it was.
+     *
+     * @param links LINK commands with their arguments
+     * @return number of routers after the changes
+     */
+    private synchronized int commit(List<String[]> links) {
+        if (links.isEmpty()) return state.getIndex().size();
+        Graph nextGraph = new Graph(graph);
+        Set<String> touched = new HashSet<>();
+        for (String[] link : links) {
+            nextGraph.addEdge(link[1], link[2], Integer.parseInt(link[3]));
+            touched.add(link[1]);
+            touched.add(link[2]);
+        }
+        RoutingState nextState = converge(new RoutingState(state), nextGraph, touched);
+        RoutingSnapshot next = snapshot.get().next(nextState);
+
+        graph = nextGraph;
+        state = nextState;
+        snapshot.set(next);
+        paths.advance(next);
+        return state.getIndex().size();
+    }
+
+    /**
+     * Runs the engine on a batch of link changes.
+     *
+     * @param state copy of the current state, free to change
+     * @param graph copy of the current links with the batch applied
+     * @param touched names of the routers named in the batch
+     * @return the converged state
+     */
+    RoutingState converge(RoutingState state, Graph graph, Set<String> touched) {
+        return DistanceVector.applyBatch(state, graph, touched, footprint, null);
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.*;
+
+/**
+ * Immutable, epoch numbered copy of the converged routes of a topology, read
+ * by the routing daemon while the engine works on the next one. Lookups are
+ * two hash lookups for the names and two array reads.
+ * Routes are stored per source router in blocks of BLOCK destinations. A new
+ * snapshot of the same routers shares every block without changed routes
+ * with the previous one, so publishing it costs the changed entries plus
+ * one pointer per router, not a copy of all n^2 routes. Such a snapshot
+ * also lists the routes whose next hop differs from its predecessor, so
+ * caches of paths can be invalidated precisely; a route whose cost alone
+ * changed leaves every path through it as it was.
+ */
+final class RoutingSnapshot {
+    private static final int BLOCK_BITS = 8;
+    /** Destinations per block */
+    private static final int BLOCK = 1 << BLOCK_BITS;
+
+    private final long epoch;
+    private final NodeIndex index;
+    /** Packed best routes by source router, block and destination within the block */
+    private final long[][][] routes;
+    /** Routes with a new next hop since the previous epoch as src << 32 | dest, null if unknown */
+    private final long[] rerouted;
+
+    /**
+     * Copies all routes of a converged state.
+     *
+     * @param epoch number of the snapshot
+     * @param index symbol table of the state, never modified afterwards
+     * @param minCost converged routes, copied
+     */
+    public RoutingSnapshot(long epoch, NodeIndex index, long[][] minCost) {
+        this.epoch = epoch;
+        this.index = index;
+        this.rerouted = null;
+        int n = minCost.length;
+        this.routes = new long[n][][];
+        for (int s = 0; s < n; s++) {
+            long[][] row = new long[(n + BLOCK - 1) >>> BLOCK_BITS][];
+            for (int b = 0; b < row.length; b++) {
+                row[b] = block(minCost[s], b);
+            }
+            routes[s] = row;
+        }
+    }
+
+    private RoutingSnapshot(long epoch, NodeIndex index, long[][][] routes, long[] rerouted) {
+        this.epoch = epoch;
+        this.index = index;
+        this.routes = routes;
+        this.rerouted = rerouted;
+    }
+
+    private static long[] block(long[] row, int b) {
+        int from = b << BLOCK_BITS;
+        return Arrays.copyOfRange(row, from, Math.min(row.length, from + BLOCK));
+    }
+
+    /**
+     * Builds the snapshot of the next epoch from a state that converged again
+     * after this one was taken. The changed routes are found through the
+     * dirty destinations of the state's distance table, which are cleared;
+     * the table must have been tracking them since this snapshot was taken.
+     * A state with other routers is copied in full.
+     *
+     * @param state converged state
+     * @return the new snapshot
+     */
+    public RoutingSnapshot next(RoutingState state) {
+        long[][] minCost = state.getMinCost();
+        DistanceTable table = state.getTable();
+        if (state.getIndex() != index) {
+            for (int s = 0; s < minCost.length; s++) {
+                table.takeDirty(s);
+            }
+            return new RoutingSnapshot(epoch + 1, state.getIndex(), minCost);
+        }
+        long[][][] next = routes.clone();
+        long[] rerouted = new long[16];
+        int count = 0;
+        for (int s = 0; s < next.length; s++) {
+            BitSet dirty = table.takeDirty(s);
+            if (dirty == null) continue;
+            long[][] row = routes[s].clone();
+            for (int d = dirty.nextSetBit(0); d >= 0; d = dirty.nextSetBit(d + 1)) {
+                int b = d >>> BLOCK_BITS;
+                // A block is only copied if one of its routes really changed
+                long old = routes[s][b][d & (BLOCK - 1)];
+                if (old == minCost[s][d]) continue;
+                if (row[b] == routes[s][b]) row[b] = block(minCost[s], b);
+                if (Route.via(old) == Route.via(minCost[s][d])) continue;
+                if (count == rerouted.length) rerouted = Arrays.copyOf(rerouted, 2 * count);
+                rerouted[count++] = (long) s << 32 | d;
+            }
+            next[s] = row;
+        }
+        return new RoutingSnapshot(epoch + 1, index, next, Arrays.copyOf(rerouted, count));
+    }
+
+    /** @return number of this snapshot, one more than the snapshot it was built from */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @return routes whose next hop differs from the previous epoch as
+     *         src << 32 | dest, or null if this snapshot was copied in full
+     */
+    public long[] getRerouted() {
+        return rerouted;
+    }
+
+    public NodeIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @param src source router id
+     * @param dest destination router id
+     * @return packed best route, Route.NONE if dest is unreachable
+     */
+    public long route(int src, int dest) {
+        return routes[src][dest >>> BLOCK_BITS][dest & (BLOCK - 1)];
+    }
+}
@@ -0,0 +1,89 @@
+import java.util.*;
+
+/**
+ * Converging routing state of one topology: the node index, the distance
+ * tables and the best route of every node pair. Best routes are double
+ * buffered; a tick reads the previous routes from one matrix, writes the
+ * routes that change into the other, and then the two are swapped.
+ */
+class RoutingState {
+    private final NodeIndex index;
+    private DistanceTable table;
+    private long[][] minCost;
+    private long[][] nextMinCost;
+
+    public RoutingState(NodeIndex index, DistanceTable table, long[][] minCost) {
+        this.index = index;
+        this.table = table;
+        this.minCost = minCost;
+        this.nextMinCost = new long[minCost.length][];
+        for (int i = 0; i < minCost.length; i++) {
+            nextMinCost[i] = minCost[i].clone();
+        }
+    }
+
+    /**
+     * Copies a state so that running or relinking the copy leaves the
+     * original as it was. The node index is shared, as it never changes.
+     *
+     * @param other the state to copy
+     */
+    public RoutingState(RoutingState other) {
+        this.index = other.index;
+        this.table = new DistanceTable(other.table);
+        this.minCost = new long[other.minCost.length][];
+        this.nextMinCost = new long[other.nextMinCost.length][];
+        for (int i = 0; i < minCost.length; i++) {
+            minCost[i] = other.minCost[i].clone();
+            nextMinCost[i] = other.nextMinCost[i].clone();
+        }
+    }
+
+    public NodeIndex getIndex() {
+        return index;
+    }
+
+    public DistanceTable getTable() {
+        return table;
+    }
+
+    /** @return best routes as of the last completed tick */
+    public long[][] getMinCost() {
+        return minCost;
+    }
+
+    /** @return buffer receiving the best routes of the tick in progress */
+    public long[][] getNextMinCost() {
+        return nextMinCost;
+    }
+
+    /**
+     * Replaces the distance table after the links between the same nodes
+     * changed. The converged routes are kept as they are.
+     * 
+     * @param newTable table built for the new links
+     * @return ids of the routers whose links changed
+     */
+    public int[] relink(DistanceTable newTable) {
+        Adjacency oldAdj = table.getAdjacency();
+        Adjacency newAdj = newTable.getAdjacency();
+        int[] changed = new int[index.size()];
+        int count = 0;
+        for (int i = 0; i < index.size(); i++) {
+            if (!newAdj.sameLinks(oldAdj, i)) changed[count++] = i;
+        }
+        table = newTable;
+        return Arrays.copyOf(changed, count);
+    }
+
+    /**
+     * Publishes the routes of the tick in progress. When a run converges no
+     * route changed on its last tick, so both buffers end up identical and
+     * the next run can start from either.
+     */
+    public void swap() {
+        long[][] done = minCost;
+        minCost = nextMinCost;
+        nextMinCost = done;
+    }
+}
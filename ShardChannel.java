@@ -0,0 +1,102 @@
+import java.io.*;
+import java.net.Socket;
+
+/**
+ * One end of a loopback connection between the shard coordinator and a worker.
+ * Messages are a type byte followed by variable-length integers: ids and
+ * counts take one byte below 128, and costs are zigzag encoded because
+ * overflowed costs can be negative.
+ */
+class ShardChannel implements Closeable {
+    /** Coordinator to worker: the routers of a shard and their links */
+    static final int LOAD = 1;
+    /** Coordinator to worker: routes of other shards' boundary routers, starting the next round */
+    static final int ROUND = 2;
+    /** Coordinator to worker: request for the routes of one router */
+    static final int ROW = 3;
+    /** Coordinator to worker: shut down */
+    static final int QUIT = 4;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    public ShardChannel(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+    }
+
+    public void writeType(int type) throws IOException {
+        out.writeByte(type);
+    }
+
+    public int readType() throws IOException {
+        return in.readUnsignedByte();
+    }
+
+    /** Writes a non-negative int in 7-bit groups, least significant first */
+    public void writeInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public int readInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+
+    /** Writes a packed route: next hop plus one, then the zigzag encoded cost */
+    public void writeRoute(long route) throws IOException {
+        int cost = Route.cost(route);
+        writeInt(Route.via(route) + 1);
+        writeInt((cost << 1) ^ (cost >> 31));
+    }
+
+    public long readRoute() throws IOException {
+        int via = readInt() - 1;
+        int zigzag = readInt();
+        return Route.pack(via, (zigzag >>> 1) ^ -(zigzag & 1));
+    }
+
+    public void writeBatch(RouteBatch batch) throws IOException {
+        writeInt(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            writeInt(batch.getRouter(i));
+            writeInt(batch.getDest(i));
+            writeRoute(batch.getRoute(i));
+        }
+    }
+
+    /**
+     * Reads a batch written by writeBatch.
+     *
+     * @param batch cleared and filled with the entries read
+     */
+    public void readBatch(RouteBatch batch) throws IOException {
+        batch.clear();
+        int size = readInt();
+        for (int i = 0; i < size; i++) {
+            int router = readInt();
+            int dest = readInt();
+            batch.add(router, dest, readRoute());
+        }
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
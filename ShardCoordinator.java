@@ -0,0 +1,237 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Runs the distance vector algorithm on worker processes that each own a
+ * share of the routers. Workers only talk to the coordinator over
+ * loopback TCP: every round the coordinator forwards the changed routes of
+ * boundary routers to the shards that own their neighbors, and the run has
+ * converged once a round leaves no route to apply anywhere.
+ */
+class ShardCoordinator implements Closeable {
+    /** How long to wait for a worker process to connect */
+    private static final int CONNECT_TIMEOUT_MS = 60_000;
+
+    private final Process[] processes;
+    private final ShardChannel[] workers;
+    private final RouteBatch[] inbound;
+    /** Topology of the last run, null before the first */
+    private NodeIndex index;
+    private Adjacency adj;
+    /** Shard of every router of the last run */
+    private int[] owner;
+    private int n;
+
+    /**
+     * Starts the worker processes and waits until all of them are connected.
+     *
+     * @param shards number of worker processes
+     * @param options command line options passed on to every worker
+     */
+    public ShardCoordinator(int shards, List<String> options) {
+        processes = new Process[shards];
+        workers = new ShardChannel[shards];
+        inbound = new RouteBatch[shards];
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        try (ServerSocket server = new ServerSocket(0, shards, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(CONNECT_TIMEOUT_MS);
+            for (int s = 0; s < shards; s++) {
+                List<String> command = new ArrayList<>(Arrays.asList(
+                        java, "-cp", System.getProperty("java.class.path"), "DistanceVector",
+                        "--worker=" + server.getLocalPort()));
+                command.addAll(options);
+                processes[s] = new ProcessBuilder(command)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+            }
+            for (int s = 0; s < shards; s++) {
+                workers[s] = new ShardChannel(server.accept());
+                inbound[s] = new RouteBatch();
+            }
+        } catch (SocketTimeoutException e) {
+            abort();
+            throw new IllegalStateException("Shard workers did not connect", e);
+        } catch (IOException e) {
+            abort();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Kills the worker processes after a failed start */
+    private void abort() {
+        for (Process p : processes) {
+            if (p != null) p.destroy();
+        }
+    }
+
+    /**
+     * Computes the routes of a topology on the workers. The first call starts
+     * from scratch. Later calls keep the converged routes like the in-process
+     * engines do: routers keep their shard, new routers go to the smallest
+     * shard, and only routers whose links changed are re-seeded unless the
+     * set of routers grew.
+     *
+     * @param newIndex symbol table of all nodes
+     * @param newAdj direct links of all nodes
+     */
+    public void run(NodeIndex newIndex, Adjacency newAdj) {
+        long start = System.nanoTime();
+        int shards = workers.length;
+        int oldN = (index == null) ? 0 : index.size();
+        n = newIndex.size();
+        int[] toOld = new int[n];
+        int[] newOwner = new int[n];
+        int[] sizes = new int[shards];
+        for (int u = 0; u < n; u++) {
+            toOld[u] = (index == null) ? -1 : index.getId(newIndex.getName(u));
+            if (toOld[u] >= 0) sizes[owner[toOld[u]]]++;
+        }
+        for (int u = 0; u < n; u++) {
+            if (toOld[u] >= 0) {
+                newOwner[u] = owner[toOld[u]];
+            } else {
+                int smallest = 0;
+                for (int t = 1; t < shards; t++) {
+                    if (sizes[t] < sizes[smallest]) smallest = t;
+                }
+                newOwner[u] = smallest;
+                sizes[smallest]++;
+            }
+        }
+
+        try {
+            for (int s = 0; s < shards; s++) {
+                ShardChannel w = workers[s];
+                w.writeType(ShardChannel.LOAD);
+                w.writeInt(n);
+                w.writeInt(oldN);
+                if (oldN > 0) {
+                    for (int u = 0; u < n; u++) {
+                        w.writeInt(toOld[u] + 1);
+                    }
+                }
+                w.writeInt(sizes[s]);
+                for (int u = 0; u < n; u++) {
+                    if (newOwner[u] != s) continue;
+                    boolean seed = oldN > 0 && (oldN != n || !newAdj.sameLinks(adj, u));
+                    int[] nbrs = newAdj.getNeighbors(u);
+                    int[] costs = newAdj.getCosts(u);
+                    w.writeInt(u);
+                    w.writeInt(seed ? 1 : 0);
+                    w.writeInt(nbrs.length);
+                    for (int k = 0; k < nbrs.length; k++) {
+                        w.writeInt(nbrs[k]);
+                        w.writeInt(costs[k]);
+                    }
+                }
+                w.flush();
+            }
+            index = newIndex;
+            adj = newAdj;
+            owner = newOwner;
+
+            int rounds = 0;
+            long forwarded = 0;
+            long work = collect();
+            while (work > 0) {
+                for (int s = 0; s < shards; s++) {
+                    workers[s].writeType(ShardChannel.ROUND);
+                    workers[s].writeBatch(inbound[s]);
+                    forwarded += inbound[s].size();
+                    workers[s].flush();
+                }
+                work = collect();
+                rounds++;
+            }
+            DistanceVector.reportRun("Sharded", rounds, "rounds on " + shards + " shards ("
+                                     + forwarded + " boundary routes forwarded)", start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the reply of every worker to the last request and sorts the
+     * boundary routes by the shards that have to apply them.
+     *
+     * @return number of routes waiting to be applied anywhere
+     */
+    private long collect() throws IOException {
+        int shards = workers.length;
+        for (RouteBatch batch : inbound) {
+            batch.clear();
+        }
+        boolean[] target = new boolean[shards];
+        RouteBatch sent = new RouteBatch();
+        long work = 0;
+        for (int s = 0; s < shards; s++) {
+            work += workers[s].readInt();
+            workers[s].readBatch(sent);
+            for (int i = 0; i < sent.size(); i++) {
+                int from = sent.getRouter(i);
+                for (int v : adj.getNeighbors(from)) {
+                    target[owner[v]] = true;
+                }
+                target[s] = false;
+                for (int t = 0; t < shards; t++) {
+                    if (!target[t]) continue;
+                    target[t] = false;
+                    inbound[t].add(from, sent.getDest(i), sent.getRoute(i));
+                    work++;
+                }
+            }
+        }
+        return work;
+    }
+
+    /**
+     * Fetches the converged routes of one router from the worker that owns it.
+     *
+     * @param router id of the router
+     * @return packed best route to every node
+     */
+    public long[] row(int router) {
+        ShardChannel w = workers[owner[router]];
+        try {
+            w.writeType(ShardChannel.ROW);
+            w.writeInt(router);
+            w.flush();
+            long[] routes = new long[n];
+            for (int d = 0; d < n; d++) {
+                routes[d] = w.readRoute();
+            }
+            return routes;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Tells the workers to quit and waits for their processes to exit */
+    @Override
+    public void close() {
+        for (ShardChannel w : workers) {
+            if (w == null) continue;
+            try {
+                w.writeType(ShardChannel.QUIT);
+                w.flush();
+                w.close();
+            } catch (IOException e) {
+                // The worker is gone already
+            }
+        }
+        for (Process p : processes) {
+            if (p == null) continue;
+            try {
+                p.waitFor();
+            } catch (InterruptedException e) {
+                p.destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.*;
+
+/**
+ * Worker process of a sharded simulation. It stores only the distance table
+ * rows and routes of the routers it owns, so the memory of a topology is
+ * split across the workers.
+ * Every round it applies the routes received since the previous round and
+ * reports its changed routes: those of routers with neighbors in other shards
+ * go to the coordinator, the rest stay local for the next round.
+ */
+class ShardWorker {
+    private static final int[] NONE = new int[0];
+
+    /** Whether this worker owns a router */
+    private boolean[] mine;
+    private Adjacency adj;
+    private DistanceTable table;
+    /** Routes of the owned routers, null rows for the others */
+    private long[][] minCost;
+    /** Owned neighbors of every router owned elsewhere */
+    private int[][] remoteNbrs;
+    /** Whether an owned router has a neighbor owned elsewhere */
+    private boolean[] boundary;
+    /** Whether a route of an owned router is already in changed, null rows for the others */
+    private boolean[][] queued;
+
+    /** Routes of owned routers to apply in the next round */
+    private RouteBatch local = new RouteBatch();
+    private RouteBatch applying = new RouteBatch();
+    private final RouteBatch remote = new RouteBatch();
+    /** Routes of owned routers changed in this round, routes filled in at the end */
+    private final RouteBatch changed = new RouteBatch();
+    /** Changed routes of boundary routers, sent to the coordinator */
+    private final RouteBatch outgoing = new RouteBatch();
+
+    /**
+     * Connects to the coordinator and serves its requests until told to quit.
+     *
+     * @param port loopback port of the coordinator
+     */
+    public static void serve(int port) {
+        try (ShardChannel channel = new ShardChannel(new Socket(InetAddress.getLoopbackAddress(), port))) {
+            ShardWorker worker = new ShardWorker();
+            while (true) {
+                int type = channel.readType();
+                if (type == ShardChannel.LOAD) {
+                    worker.load(channel);
+                    worker.reply(channel);
+                } else if (type == ShardChannel.ROUND) {
+                    channel.readBatch(worker.remote);
+                    worker.round();
+                    worker.reply(channel);
+                } else if (type == ShardChannel.ROW) {
+                    long[] row = worker.minCost[channel.readInt()];
+                    for (long route : row) {
+                        channel.writeRoute(route);
+                    }
+                    channel.flush();
+                } else if (type == ShardChannel.QUIT) {
+                    return;
+                } else {
+                    throw new IllegalStateException("Unknown message type " + type);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the routers of this shard and their links. A first load starts
+     * every router with only the route to itself; later loads carry over the
+     * previous state the same way mergeState does, and the routers marked as
+     * seeds re-advertise their whole vector.
+     */
+    private void load(ShardChannel channel) throws IOException {
+        int n = channel.readInt();
+        int oldN = channel.readInt();
+        int[] toOld = null;
+        int[] toNew = null;
+        if (oldN > 0) {
+            toOld = new int[n];
+            toNew = new int[oldN];
+            for (int i = 0; i < n; i++) {
+                toOld[i] = channel.readInt() - 1;
+                if (toOld[i] >= 0) toNew[toOld[i]] = i;
+            }
+        }
+
+        int[][] ids = new int[n][];
+        int[][] costs = new int[n][];
+        Arrays.fill(ids, NONE);
+        Arrays.fill(costs, NONE);
+        mine = new boolean[n];
+        boolean[] seed = new boolean[n];
+        int owned = channel.readInt();
+        for (int i = 0; i < owned; i++) {
+            int u = channel.readInt();
+            mine[u] = true;
+            seed[u] = channel.readInt() != 0;
+            int degree = channel.readInt();
+            ids[u] = new int[degree];
+            costs[u] = new int[degree];
+            for (int k = 0; k < degree; k++) {
+                ids[u][k] = channel.readInt();
+                costs[u][k] = channel.readInt();
+            }
+        }
+        Adjacency newAdj = new Adjacency(ids, costs);
+        table = (toOld == null) ? new DistanceTable(newAdj)
+                                : new DistanceTable(newAdj, table, toOld, toNew);
+        adj = newAdj;
+
+        long[][] oldMinCost = minCost;
+        minCost = new long[n][];
+        for (int u = 0; u < n; u++) {
+            if (!mine[u]) continue;
+            minCost[u] = new long[n];
+            Arrays.fill(minCost[u], Route.NONE);
+            int ou = (toOld == null) ? -1 : toOld[u];
+            if (ou >= 0) {
+                for (int ov = 0; ov < oldN; ov++) {
+                    long route = oldMinCost[ou][ov];
+                    int via = Route.via(route);
+                    minCost[u][toNew[ov]] = (via < 0) ? route : Route.pack(toNew[via], Route.cost(route));
+                }
+            }
+            minCost[u][u] = Route.pack(u, 0);
+        }
+
+        int[] remoteDegree = new int[n];
+        for (int u = 0; u < n; u++) {
+            for (int v : ids[u]) {
+                if (!mine[v]) remoteDegree[v]++;
+            }
+        }
+        remoteNbrs = new int[n][];
+        for (int v = 0; v < n; v++) {
+            remoteNbrs[v] = (remoteDegree[v] == 0) ? NONE : new int[remoteDegree[v]];
+            remoteDegree[v] = 0;
+        }
+        boundary = new boolean[n];
+        for (int u = 0; u < n; u++) {
+            for (int v : ids[u]) {
+                if (mine[v]) continue;
+                remoteNbrs[v][remoteDegree[v]++] = u;
+                boundary[u] = true;
+            }
+        }
+
+        queued = new boolean[n][];
+        local.clear();
+        outgoing.clear();
+        for (int u = 0; u < n; u++) {
+            if (!mine[u]) continue;
+            queued[u] = new boolean[n];
+            if (toOld == null) {
+                advertise(u, u);
+            } else if (seed[u]) {
+                // Dropped neighbor columns may have carried the best route
+                for (int d = 0; d < n; d++) {
+                    if (d != u) select(u, d);
+                }
+                for (int d = 0; d < n; d++) {
+                    queued[u][d] = false;
+                    advertise(u, d);
+                }
+            }
+        }
+        changed.clear();
+    }
+
+    /** Queues the current route of an owned router for its neighbors */
+    private void advertise(int u, int d) {
+        long route = minCost[u][d];
+        local.add(u, d, route);
+        if (boundary[u]) outgoing.add(u, d, route);
+    }
+
+    /** Applies the routes of the previous round and collects the changes */
+    private void round() {
+        RouteBatch swap = applying;
+        applying = local;
+        local = swap;
+        local.clear();
+        outgoing.clear();
+
+        for (int i = 0; i < applying.size(); i++) {
+            int from = applying.getRouter(i);
+            for (int u : adj.getNeighbors(from)) {
+                if (mine[u]) deliver(u, from, applying.getDest(i), applying.getRoute(i));
+            }
+        }
+        for (int i = 0; i < remote.size(); i++) {
+            int from = remote.getRouter(i);
+            for (int u : remoteNbrs[from]) {
+                deliver(u, from, remote.getDest(i), remote.getRoute(i));
+            }
+        }
+
+        for (int i = 0; i < changed.size(); i++) {
+            int u = changed.getRouter(i);
+            int d = changed.getDest(i);
+            queued[u][d] = false;
+            advertise(u, d);
+        }
+        changed.clear();
+    }
+
+    /**
+     * Relaxes the route of an owned router through the neighbor that advertised it.
+     *
+     * @param u id of the owned router
+     * @param from id of the advertising neighbor
+     * @param d id of the destination
+     * @param route the neighbor's packed route to d
+     */
+    private void deliver(int u, int from, int d, long route) {
+        if (d == u) return;
+        int k = adj.slot(u, from);
+        int newCost = DistanceVector.relaxedCost(adj.getCosts(u)[k], route, u);
+        if (table.get(u, d, k) == newCost) return;
+        table.set(u, d, k, newCost);
+        select(u, d);
+    }
+
+    /**
+     * Re-selects the best route of an owned router and queues it for
+     * advertisement if neighbors would see a difference.
+     */
+    private void select(int u, int d) {
+        long best = DistanceVector.findMinHop(table, u, d);
+        long old = minCost[u][d];
+        if (best == old) return;
+        minCost[u][d] = best;
+        if (DistanceVector.visibleChange(old, best) && !queued[u][d]) {
+            queued[u][d] = true;
+            changed.add(u, d, 0);
+        }
+    }
+
+    /** Reports the number of local routes still to apply and the routes for other shards */
+    private void reply(ShardChannel channel) throws IOException {
+        channel.writeInt(local.size());
+        channel.writeBatch(outgoing);
+        channel.flush();
+    }
+}
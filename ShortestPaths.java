@@ -0,0 +1,153 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the converged routing tables directly with one Dijkstra search
+ * per destination instead of running distance vector ticks.
+ * Links are symmetric, so the search from a destination d yields the cost
+ * from every router to d. A router's route to d then goes through the
+ * neighbor v minimizing cost(router, v) + cost(v, d), with the smallest
+ * neighbor id winning ties exactly like findMinHop.
+ */
+class ShortestPaths {
+    private final Adjacency adj;
+    private final int maxMetric;
+
+    /**
+     * @param adj direct links of all nodes
+     * @param maxMetric costs at or above this value count as unreachable
+     */
+    public ShortestPaths(Adjacency adj, int maxMetric) {
+        this.adj = adj;
+        this.maxMetric = maxMetric;
+    }
+
+    /**
+     * Fills in the best route between every pair of routers.
+     * Searches run in parallel, each writing one destination column.
+     *
+     * @param minCost receives the packed best route from every router to every node
+     * @param pool pool to run the searches on, or null for the common pool
+     */
+    public void computeAll(long[][] minCost, ForkJoinPool pool) {
+        int n = adj.size();
+        // Scratch space of one search, reused by the destinations of a worker thread
+        ThreadLocal<Search> search = ThreadLocal.withInitial(() -> new Search(n));
+        Runnable all = () -> IntStream.range(0, n).parallel()
+                                      .forEach(d -> search.get().fillColumn(d, minCost));
+        if (pool == null) {
+            all.run();
+        } else {
+            pool.submit(all).join();
+        }
+    }
+
+    /** State of a Dijkstra search: costs plus an indexed binary min-heap of routers */
+    private final class Search {
+        final long[] dist;
+        final int[] heap;
+        /** Position of every router in heap, or -1 if not queued */
+        final int[] pos;
+        int size;
+
+        Search(int n) {
+            dist = new long[n];
+            heap = new int[n];
+            pos = new int[n];
+        }
+
+        /**
+         * Computes the route from every router to one destination.
+         *
+         * @param d id of the destination
+         * @param minCost receives column d
+         */
+        void fillColumn(int d, long[][] minCost) {
+            Arrays.fill(dist, Long.MAX_VALUE);
+            Arrays.fill(pos, -1);
+            size = 0;
+            dist[d] = 0;
+            push(d);
+            while (size > 0) {
+                int u = pop();
+                int[] nbrs = adj.getNeighbors(u);
+                int[] costs = adj.getCosts(u);
+                for (int k = 0; k < nbrs.length; k++) {
+                    int v = nbrs[k];
+                    long alt = dist[u] + costs[k];
+                    if (alt < dist[v]) {
+                        dist[v] = alt;
+                        if (pos[v] < 0) push(v); else up(pos[v]);
+                    }
+                }
+            }
+
+            for (int s = 0; s < dist.length; s++) {
+                if (s == d) {
+                    minCost[s][d] = Route.pack(d, 0);
+                    continue;
+                }
+                int[] nbrs = adj.getNeighbors(s);
+                int[] costs = adj.getCosts(s);
+                long best = Long.MAX_VALUE;
+                int via = -1;
+                // Neighbors are sorted, so strict < keeps the smallest id on ties
+                for (int k = 0; k < nbrs.length; k++) {
+                    if (dist[nbrs[k]] == Long.MAX_VALUE) continue;
+                    long cost = costs[k] + dist[nbrs[k]];
+                    if (cost < best) {
+                        best = cost;
+                        via = nbrs[k];
+                    }
+                }
+                minCost[s][d] = (via < 0 || best >= maxMetric) ? Route.NONE : Route.pack(via, (int) best);
+            }
+        }
+
+        private void push(int v) {
+            heap[size] = v;
+            pos[v] = size;
+            up(size++);
+        }
+
+        private int pop() {
+            int top = heap[0];
+            pos[top] = -1;
+            if (--size > 0) {
+                heap[0] = heap[size];
+                pos[heap[0]] = 0;
+                down(0);
+            }
+            return top;
+        }
+
+        private void up(int i) {
+            int v = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+                if (dist[heap[parent]] <= dist[v]) break;
+                heap[i] = heap[parent];
+                pos[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = v;
+            pos[v] = i;
+        }
+
+        private void down(int i) {
+            int v = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && dist[heap[child + 1]] < dist[heap[child]]) child++;
+                if (dist[v] <= dist[heap[child]]) break;
+                heap[i] = heap[child];
+                pos[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = v;
+            pos[v] = i;
+        }
+    }
+}
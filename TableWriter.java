@@ -0,0 +1,94 @@
+import java.io.*;
+
+/**
+ * Buffered writer for the printed tables. Text is rendered into a reusable
+ * character buffer and handed to the output in large chunks, instead of one
+ * System.out.print call per cell and padding space.
+ */
+class TableWriter {
+    /** Rendered text is written out once the buffer grows past this size */
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final String NEWLINE = System.lineSeparator();
+
+    private final StringBuilder buf = new StringBuilder(2 * CHUNK_SIZE);
+    private char[] chunk = new char[2 * CHUNK_SIZE];
+    private final Writer out;
+
+    public TableWriter(OutputStream os) {
+        out = new BufferedWriter(new OutputStreamWriter(os), CHUNK_SIZE);
+    }
+
+    public TableWriter text(String text) {
+        buf.append(text);
+        return this;
+    }
+
+    public TableWriter number(int value) {
+        buf.append(value);
+        return this;
+    }
+
+    /**
+     * Appends text padded with spaces to a fixed width for table formatting.
+     * 
+     * @param text the text to append
+     * @param width the total width to pad to
+     * @return this writer
+     */
+    public TableWriter pad(String text, int width) {
+        buf.append(text);
+        return spaces(width - text.length());
+    }
+
+    /**
+     * Appends a distance table cost padded to a fixed width.
+     * 
+     * @param cost the cost to append, INF for unreachable or unset entries
+     * @param width the total width to pad to
+     * @return this writer
+     */
+    public TableWriter padCost(int cost, int width) {
+        if (cost == DistanceTable.INF || cost == DistanceTable.UNSET) {
+            return pad("INF", width);
+        }
+        int start = buf.length();
+        buf.append(cost);
+        return spaces(width - (buf.length() - start));
+    }
+
+    private TableWriter spaces(int count) {
+        for (int i = 0; i < count; i++) {
+            buf.append(' ');
+        }
+        return this;
+    }
+
+    /** Ends the current line and writes the buffer out if it is large enough. */
+    public TableWriter newline() {
+        buf.append(NEWLINE);
+        if (buf.length() >= CHUNK_SIZE) drain();
+        return this;
+    }
+
+    /** Writes out everything rendered so far. */
+    public void flush() {
+        drain();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void drain() {
+        int len = buf.length();
+        if (len > chunk.length) chunk = new char[len];
+        buf.getChars(0, len, chunk, 0);
+        buf.setLength(0);
+        try {
+            out.write(chunk, 0, len);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
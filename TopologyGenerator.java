@@ -0,0 +1,336 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Generates input for DistanceVector: router names, a START section with
+ * the links of a parameterized topology family, and an UPDATE section with
+ * random cost changes and link removals.
+ * The output is streamed as it is generated. Links are produced again from
+ * the same seed to pick the updated ones, so apart from the preferential
+ * attachment of scale-free topologies only the chosen updates are held in
+ * memory. The same arguments always produce the same output.
+ *
+ * Usage: java TopologyGenerator --family=ring|grid|tree|random|scale-free|fat-tree
+ *            [--nodes=N] [--degree=D] [--weights=uniform:LO:HI|constant:W|exponential:MEAN]
+ *            [--updates=K] [--update-kinds=cost,remove] [--seed=S]
+ */
+class TopologyGenerator {
+    /** Topology families; what the degree means depends on the family */
+    enum Family {
+        /** Circular lattice, every router linked to its degree / 2 nearest routers on each side */
+        RING,
+        /** Square grid, routers linked to their horizontal and vertical neighbors */
+        GRID,
+        /** Complete tree where every router has degree children */
+        TREE,
+        /** Erdos-Renyi graph with the given expected degree */
+        RANDOM,
+        /** Barabasi-Albert graph, every new router linking to degree / 2 routers picked by degree */
+        SCALE_FREE,
+        /** k-ary fat tree of core, aggregation and edge switches with k = degree; nodes is ignored */
+        FAT_TREE
+    }
+
+    /** Receives the links of a topology in generation order */
+    interface LinkSink {
+        void link(int u, int v, int cost) throws IOException;
+    }
+
+    private final Family family;
+    private final int nodes;
+    private final int degree;
+    /** Parsed cost distribution: its name and up to two parameters */
+    private final String distribution;
+    private final double low;
+    private final double high;
+    private final long seed;
+
+    /**
+     * @param family shape of the topology
+     * @param nodes number of routers, ignored for fat trees
+     * @param degree family specific degree, see Family
+     * @param weights distribution of link costs: uniform:LO:HI, constant:W or exponential:MEAN
+     * @param seed seed of every random choice
+     */
+    public TopologyGenerator(Family family, int nodes, int degree, String weights, long seed) {
+        this.family = family;
+        this.degree = degree;
+        this.seed = seed;
+        String[] parts = weights.split(":");
+        this.distribution = parts[0];
+        try {
+            if ("uniform".equals(distribution)) {
+                low = Integer.parseInt(parts[1]);
+                high = Integer.parseInt(parts[2]);
+            } else if ("constant".equals(distribution) || "exponential".equals(distribution)) {
+                low = Double.parseDouble(parts[1]);
+                high = low;
+            } else {
+                throw new IllegalArgumentException("Unknown weight distribution: " + weights);
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Missing parameter in weight distribution: " + weights);
+        }
+        if ("exponential".equals(distribution) && low < 1) {
+            // Costs are shifted to start at 1, so a smaller mean cannot be met
+            throw new IllegalArgumentException("Exponential weights need a mean of at least 1, got " + parts[1]);
+        }
+        if (family == Family.FAT_TREE) {
+            if (degree < 2 || degree % 2 != 0) {
+                throw new IllegalArgumentException("Fat tree needs an even degree, got " + degree);
+            }
+            this.nodes = 5 * degree * degree / 4;
+        } else {
+            this.nodes = nodes;
+        }
+    }
+
+    /** @return the degree used when none is given: 4 for grids, random graphs and fat trees, else 2 */
+    public static int defaultDegree(Family family) {
+        return (family == Family.GRID || family == Family.RANDOM || family == Family.FAT_TREE) ? 4 : 2;
+    }
+
+    /** @return number of routers generated */
+    public int getNodes() {
+        return nodes;
+    }
+
+    /** @return input name of a router */
+    public static String name(int router) {
+        return "R" + router;
+    }
+
+    /**
+     * Writes a complete input stream.
+     *
+     * @param out where the text goes
+     * @param updates number of UPDATE events, each on a different link
+     * @param costChanges whether updates may change the cost of a link
+     * @param removals whether updates may remove a link
+     */
+    public void write(Appendable out, int updates, boolean costChanges, boolean removals)
+            throws IOException {
+        for (int i = 0; i < nodes; i++) {
+            out.append(name(i)).append('\n');
+        }
+        out.append("START\n");
+        long[] count = new long[1];
+        forEachLink((u, v, cost) -> {
+            line(out, u, v, cost);
+            count[0]++;
+        });
+        out.append("UPDATE\n");
+        if (updates > 0 && (costChanges || removals)) {
+            writeUpdates(out, pick(count[0], updates), costChanges, removals);
+        }
+        out.append("END\n");
+    }
+
+    private static void line(Appendable out, int u, int v, int cost) throws IOException {
+        out.append(name(u)).append(' ').append(name(v)).append(' ')
+           .append(Integer.toString(cost)).append('\n');
+    }
+
+    /**
+     * Picks distinct link positions uniformly with Floyd's algorithm.
+     *
+     * @param links number of links
+     * @param count number of positions wanted
+     * @return the chosen positions in ascending order
+     */
+    private long[] pick(long links, int count) {
+        Random random = new Random(seed ^ 0x5DEECE66DL);
+        int wanted = (int) Math.min(links, count);
+        Set<Long> chosen = new HashSet<>();
+        for (long j = links - wanted; j < links; j++) {
+            long t = (long) (random.nextDouble() * (j + 1));
+            if (!chosen.add(t)) chosen.add(j);
+        }
+        long[] positions = new long[chosen.size()];
+        int i = 0;
+        for (long p : chosen) positions[i++] = p;
+        Arrays.sort(positions);
+        return positions;
+    }
+
+    /** Replays the links to find the chosen ones and writes an event for each */
+    private void writeUpdates(Appendable out, long[] positions, boolean costChanges, boolean removals)
+            throws IOException {
+        int[][] picked = new int[positions.length][];
+        long[] index = new long[1];
+        int[] next = new int[1];
+        forEachLink((u, v, cost) -> {
+            if (next[0] < positions.length && positions[next[0]] == index[0]) {
+                picked[next[0]++] = new int[] {u, v, cost};
+            }
+            index[0]++;
+        });
+
+        Random random = new Random(seed + 1);
+        Random costs = new Random(seed + 2);
+        // Events in random order rather than link order
+        for (int i = picked.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int[] t = picked[i];
+            picked[i] = picked[j];
+            picked[j] = t;
+        }
+        for (int[] link : picked) {
+            boolean remove = removals && (!costChanges || random.nextBoolean());
+            int cost = -1;
+            if (!remove) {
+                // Draw until the cost actually changes, unless it cannot
+                for (int tries = 0; tries < 16 && (cost < 0 || cost == link[2]); tries++) {
+                    cost = nextCost(costs);
+                }
+            }
+            line(out, link[0], link[1], cost);
+        }
+    }
+
+    /**
+     * Produces the links of the topology. Calling it again produces the same
+     * links with the same costs in the same order.
+     *
+     * @param sink receives every link
+     */
+    public void forEachLink(LinkSink sink) throws IOException {
+        Random random = new Random(seed);
+        Random costs = new Random(seed + 3);
+        LinkSink out = (u, v, ignored) -> sink.link(u, v, nextCost(costs));
+        int n = nodes;
+        if (family == Family.RING) {
+            int reach = Math.max(1, degree / 2);
+            for (int i = 0; i < n; i++) {
+                for (int r = 1; r <= reach && r < n; r++) {
+                    int j = (i + r) % n;
+                    // Small rings would list a link from both ends
+                    if (2 * r == n && j < i) continue;
+                    if (2 * r > n) continue;
+                    out.link(i, j, 0);
+                }
+            }
+        } else if (family == Family.GRID) {
+            int side = (int) Math.ceil(Math.sqrt(n));
+            for (int i = 0; i < n; i++) {
+                if ((i + 1) % side != 0 && i + 1 < n) out.link(i, i + 1, 0);
+                if (i + side < n) out.link(i, i + side, 0);
+            }
+        } else if (family == Family.TREE) {
+            int children = Math.max(1, degree);
+            for (int i = 1; i < n; i++) {
+                out.link((i - 1) / children, i, 0);
+            }
+        } else if (family == Family.RANDOM) {
+            // Batagelj-Brandes: skip geometrically distributed runs of missing links
+            double p = Math.min(1.0, (double) degree / Math.max(1, n - 1));
+            if (p <= 0) return;
+            double logQ = Math.log(1 - p);
+            int v = 1;
+            int w = -1;
+            while (v < n) {
+                w += (p >= 1) ? 1 : 1 + (int) Math.floor(Math.log(1 - random.nextDouble()) / logQ);
+                while (w >= v && v < n) {
+                    w -= v;
+                    v++;
+                }
+                if (v < n) out.link(w, v, 0);
+            }
+        } else if (family == Family.SCALE_FREE) {
+            int m = Math.max(1, degree / 2);
+            // Every link end once, so a uniform pick is a pick by degree
+            int[] ends = new int[2 * m * Math.max(n, 1)];
+            int count = 0;
+            int seedSize = Math.min(n, m + 1);
+            for (int i = 1; i < seedSize; i++) {
+                for (int j = 0; j < i; j++) {
+                    out.link(j, i, 0);
+                    ends[count++] = j;
+                    ends[count++] = i;
+                }
+            }
+            int[] targets = new int[m];
+            for (int i = seedSize; i < n; i++) {
+                int found = 0;
+                while (found < m) {
+                    int t = ends[random.nextInt(count)];
+                    boolean seen = false;
+                    for (int k = 0; k < found; k++) seen |= targets[k] == t;
+                    if (!seen) targets[found++] = t;
+                }
+                for (int k = 0; k < m; k++) {
+                    out.link(targets[k], i, 0);
+                    ends[count++] = targets[k];
+                    ends[count++] = i;
+                }
+            }
+        } else {
+            // Ids: core switches first, then per pod its aggregation and edge switches
+            int half = degree / 2;
+            int cores = half * half;
+            for (int pod = 0; pod < degree; pod++) {
+                int agg = cores + pod * degree;
+                int edge = agg + half;
+                for (int a = 0; a < half; a++) {
+                    for (int c = 0; c < half; c++) {
+                        out.link(a * half + c, agg + a, 0);
+                    }
+                    for (int e = 0; e < half; e++) {
+                        out.link(agg + a, edge + e, 0);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Draws a link cost from the configured distribution */
+    private int nextCost(Random random) {
+        if ("constant".equals(distribution)) {
+            return (int) low;
+        } else if ("exponential".equals(distribution)) {
+            // Shifted so that no link is free and the mean is the requested one
+            return 1 + (int) (-Math.log(1 - random.nextDouble()) * (low - 1));
+        }
+        return (int) low + random.nextInt((int) (high - low) + 1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Family family = Family.RING;
+        int nodes = 100;
+        int degree = -1;
+        String weights = "uniform:1:10";
+        int updates = 0;
+        boolean costChanges = true;
+        boolean removals = true;
+        long seed = 1;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--family=")) {
+                family = Family.valueOf(value.toUpperCase().replace('-', '_'));
+            } else if (arg.startsWith("--nodes=")) {
+                nodes = Integer.parseInt(value);
+            } else if (arg.startsWith("--degree=")) {
+                degree = Integer.parseInt(value);
+            } else if (arg.startsWith("--weights=")) {
+                weights = value;
+            } else if (arg.startsWith("--updates=")) {
+                updates = Integer.parseInt(value);
+            } else if (arg.startsWith("--update-kinds=")) {
+                List<String> kinds = Arrays.asList(value.split(","));
+                costChanges = kinds.contains("cost");
+                removals = kinds.contains("remove");
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(value);
+            } else {
+                System.err.println("Unknown option: " + arg);
+                System.exit(1);
+            }
+        }
+        if (degree < 0) degree = defaultDegree(family);
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out)),
+                                        1 << 16);
+        new TopologyGenerator(family, nodes, degree, weights, seed).write(out, updates, costChanges, removals);
+        out.flush();
+    }
+}
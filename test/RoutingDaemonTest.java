@@ -0,0 +1,102 @@
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Checks that a commit that fails after the engine has started leaves the
+ * daemon answering from the previous epoch, and that later commits build
+ * on the links of that epoch.
+ * Run with the compiled sources on the class path; exits with status 1 on
+ * the first failed check.
+ */
+public class RoutingDaemonTest {
+    /** Daemon whose commits fail after converging while fail is set */
+    static final class FailingDaemon extends RoutingDaemon {
+        volatile boolean fail;
+
+        FailingDaemon(RoutingState state, Graph graph) {
+            super(state, graph, false, 16);
+        }
+
+        @Override
+        RoutingState converge(RoutingState state, Graph graph, Set<String> touched) {
+            RoutingState converged = super.converge(state, graph, touched);
+            if (fail) throw new IllegalStateException("injected failure");
+            return converged;
+        }
+    }
+
+    private static int failures;
+
+    private static void check(String what, String expected, String actual) {
+        if (!expected.equals(actual)) {
+            System.err.println("FAIL " + what + ": expected <" + expected + "> but got <" + actual + ">");
+            failures++;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String input = "X\nY\nZ\nSTART\nX Y 2\nY Z 3\nX Z 9\nUPDATE\n";
+        Graph graph = DistanceVector.readTopology(new InputTokenizer(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.US_ASCII))));
+        NodeIndex index = DistanceVector.buildIndexMap(graph);
+        long[][] minCost = new long[index.size()][index.size()];
+        Adjacency adj = DistanceVector.initializeTables(minCost, index, graph.getAdjList());
+        RoutingState state = new RoutingState(index, new DistanceTable(adj), minCost);
+        DistanceVector.runDistanceVector(state, null, null);
+        FailingDaemon daemon = new FailingDaemon(state, graph);
+
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        Thread server = new Thread(() -> daemon.serve(port));
+        server.setDaemon(true);
+        server.start();
+
+        Socket socket = null;
+        for (int attempt = 0; socket == null; attempt++) {
+            try {
+                socket = new Socket("127.0.0.1", port);
+            } catch (IOException e) {
+                if (attempt == 100) throw e;
+                Thread.sleep(50);
+            }
+        }
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true)) {
+            out.println("TABLE X");
+            String table = in.readLine() + "\n" + in.readLine() + "\n" + in.readLine();
+            check("initial route", "Z,Y,5", ask(in, out, "ROUTE X Z"));
+
+            // Removing X-Y fails after the engine ran on the copies
+            daemon.fail = true;
+            check("link", "OK", ask(in, out, "LINK X Y -1"));
+            String reply = ask(in, out, "COMMIT");
+            check("failed commit", "ERR", reply.substring(0, Math.min(3, reply.length())));
+            check("route after failure", "Z,Y,5", ask(in, out, "ROUTE X Z"));
+            out.println("TABLE X");
+            check("table after failure", table, in.readLine() + "\n" + in.readLine() + "\n" + in.readLine());
+            check("epoch after failure", "0", ask(in, out, "EPOCH"));
+            check("path after failure", "Z,5,X Y Z", ask(in, out, "PATH X Z"));
+
+            // The next commit starts from the links of epoch 0, where X-Y still exists
+            daemon.fail = false;
+            check("link", "OK", ask(in, out, "LINK Y Z 4"));
+            check("commit", "OK 3", ask(in, out, "COMMIT"));
+            check("route after commit", "Z,Y,6", ask(in, out, "ROUTE X Z"));
+            check("path after commit", "Z,6,X Y Z", ask(in, out, "PATH X Z"));
+            check("epoch after commit", "1", ask(in, out, "EPOCH"));
+            out.println("SHUTDOWN");
+        }
+        if (failures > 0) System.exit(1);
+        System.out.println("RoutingDaemonTest passed");
+    }
+
+    private static String ask(BufferedReader in, PrintWriter out, String command) throws IOException {
+        out.println(command);
+        return in.readLine();
+    }
+}
@@ -0,0 +1,42 @@
+#!/bin/sh
+# Runs every inputs/NAME.txt, with the options in inputs/NAME.args if present,
+# and checks that
+#  - the default engine, --engine=sweep, --threads=4 and --output=delta
+#    replayed through DeltaReplay print exactly inputs/NAME.expected;
+#  - the async, event, actor and dijkstra engines and --shards=2 print the
+#    routing tables of inputs/NAME.expected.
+# Run from the directory holding the compiled classes.
+
+failed=0
+tmp=$(mktemp -d)
+trap 'rm -rf "$tmp"' EXIT
+
+check() {
+    if ! cmp -s "$1" "$2"; then
+        echo "FAIL $name: $3"
+        failed=1
+    fi
+}
+
+for input in inputs/*.txt; do
+    name=${input%.txt}
+    expected=$name.expected
+    args=$(cat "$name.args" 2>/dev/null)
+    # Routing tables only, as the engines without ticks print them
+    awk '/^Distance Table/ { skip = 1 } /^Routing Table/ { skip = 0 } !skip' "$expected" > "$tmp/routes"
+
+    java DistanceVector $args < "$input" > "$tmp/out"
+    check "$tmp/out" "$expected" "default engine"
+    for option in --engine=sweep --threads=4; do
+        java DistanceVector $args $option < "$input" > "$tmp/out"
+        check "$tmp/out" "$expected" "$option"
+    done
+    java DistanceVector $args --output=delta < "$input" | java DeltaReplay > "$tmp/out"
+    check "$tmp/out" "$expected" "--output=delta replayed"
+    for option in --engine=async --engine=event --engine=actor --engine=dijkstra --shards=2; do
+        java DistanceVector $args $option < "$input" > "$tmp/out" 2> /dev/null
+        check "$tmp/out" "$tmp/routes" "$option routing tables"
+    done
+done
+[ $failed -eq 0 ] && echo "All inputs passed"
+exit $failed